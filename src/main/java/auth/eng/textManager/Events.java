@@ -0,0 +1,79 @@
+package auth.eng.textManager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the text processing stages, which show where time is spent in live services
+ * (e.g. by running them with <code>-XX:StartFlightRecording</code>). Events are only populated and committed
+ * when {@link Event#shouldCommit()} holds, so they cost next to nothing while recording is off.
+ * @author Emmanouil Krasanakis
+ */
+final class Events {
+	private Events() {
+	}
+	
+	@Name("auth.eng.textManager.SentenceSplit")
+	@Label("Sentence Split")
+	@Category("Text Manager")
+	@Description("Splitting of a text into sentences")
+	static class SentenceSplit extends Event {
+		@Label("Text Length")
+		int textLength;
+		@Label("Sentences")
+		int sentences;
+		@Label("Parallelism")
+		int parallelism;
+	}
+	
+	@Name("auth.eng.textManager.Tokenization")
+	@Label("Tokenization")
+	@Category("Text Manager")
+	@Description("Splitting of a sentence into words")
+	static class Tokenization extends Event {
+		@Label("Sentence Length")
+		int sentenceLength;
+		@Label("Tokens")
+		int tokens;
+	}
+	
+	@Name("auth.eng.textManager.Stemming")
+	@Label("Stemming")
+	@Category("Text Manager")
+	@Description("Stemming of a batch of words")
+	static class Stemming extends Event {
+		@Label("Stemmer")
+		String stemmer;
+		@Label("Tokens")
+		int tokens;
+	}
+	
+	@Name("auth.eng.textManager.WordNetExpansion")
+	@Label("WordNet Expansion")
+	@Category("Text Manager")
+	@Description("WordNet lookups that expand the words of a sentence")
+	static class WordNetExpansion extends Event {
+		@Label("Words")
+		int words;
+		@Label("POS Lookups")
+		int lookups;
+		@Label("Features")
+		int features;
+	}
+	
+	@Name("auth.eng.textManager.FeatureCacheLookup")
+	@Label("Feature Cache Lookup")
+	@Category("Text Manager")
+	@Description("Lookup of a sentence's features in a feature cache")
+	static class FeatureCacheLookup extends Event {
+		@Label("Model")
+		String model;
+		@Label("Sentence Length")
+		int sentenceLength;
+		@Label("Hit")
+		boolean hit;
+	}
+}
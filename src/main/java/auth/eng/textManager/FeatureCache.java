@@ -0,0 +1,152 @@
+package auth.eng.textManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache from sentences to the feature ids that a {@link WordModel} extracts from them, which skips
+ * tokenization, stemming and gram construction for repeated sentences (e.g. identifiers or comments that recur
+ * across files). A cache is attached to models through {@link WordModel#setFeatureCache(FeatureCache)} and can be
+ * shared by many models and threads.
+ * <br>
+ * Entries are keyed on the model's unique id and its configuration (feature ids refer to the model's own vocabulary),
+ * so different models never share entries. Entries that precede a pruning of the model's vocabulary are not reused.
+ * Keys do not reference models, so discarded models can be garbage collected while their entries await eviction.
+ * The cache is split into independently locked segments, each of which evicts its least recently used entries.
+ * @author Emmanouil Krasanakis
+ */
+public class FeatureCache {
+	private static final int SEGMENTS = 16;
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	private static class Key {
+		private final long model;
+		private final long configuration;
+		private final String sentence;
+		private final int hash;
+		Key(long model, long configuration, String sentence) {
+			this.model = model;
+			this.configuration = configuration;
+			this.sentence = sentence;
+			hash = (Long.hashCode(model)*31+Long.hashCode(configuration))*31+sentence.hashCode();
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Key))
+				return false;
+			Key key = (Key)other;
+			return model==key.model && configuration==key.configuration && sentence.equals(key.sentence);
+		}
+	}
+	
+	private class Segment extends LinkedHashMap<Key, WordModel.FeatureOccurrences> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, WordModel.FeatureOccurrences> eldest) {
+			if(size()<=capacity)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	}
+	
+	/**
+	 * @param maxSize the maximum number of cached sentences
+	 */
+	public FeatureCache(int maxSize) {
+		if(maxSize<SEGMENTS)
+			throw new IllegalArgumentException("The cache should hold at least "+SEGMENTS+" sentences");
+		for(int i=0;i<SEGMENTS;i++)
+			segments[i] = new Segment(maxSize/SEGMENTS);
+	}
+	/**
+	 * Obtains the cached occurrences of a sentence's features or extracts and caches them.
+	 * @param model the model whose features are cached
+	 * @param configuration a value that changes whenever the model's features change meaning
+	 * @param sentence the sentence
+	 * @param extractor extracts the features on cache misses
+	 * @return the occurrences, which should not be modified
+	 */
+	WordModel.FeatureOccurrences get(WordModel model, long configuration, String sentence, Supplier<WordModel.FeatureOccurrences> extractor) {
+		Events.FeatureCacheLookup event = new Events.FeatureCacheLookup();
+		event.begin();
+		Key key = new Key(model.getCacheId(), configuration, sentence);
+		Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (SEGMENTS-1)];
+		WordModel.FeatureOccurrences occurrences;
+		synchronized(segment) {
+			occurrences = segment.get(key);
+		}
+		boolean hit = occurrences!=null;
+		if(hit)
+			hits.increment();
+		else {
+			misses.increment();
+			occurrences = extractor.get();
+			synchronized(segment) {
+				segment.put(key, occurrences);
+			}
+		}
+		event.end();
+		if(event.shouldCommit()) {
+			event.model = model.getName();
+			event.sentenceLength = sentence.length();
+			event.hit = hit;
+			event.commit();
+		}
+		return occurrences;
+	}
+	/**
+	 * @return the number of cached sentences
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments)
+			synchronized(segment) {
+				size += segment.size();
+			}
+		return size;
+	}
+	/**
+	 * Removes all entries (metrics are retained).
+	 */
+	public void clear() {
+		for(Segment segment : segments)
+			synchronized(segment) {
+				segment.clear();
+			}
+	}
+	public long getHitCount() {
+		return hits.sum();
+	}
+	public long getMissCount() {
+		return misses.sum();
+	}
+	/**
+	 * @return the number of entries removed to respect the maximum size
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	/**
+	 * @return the fraction of lookups that found a cached entry (0 if there were no lookups)
+	 */
+	public double getHitRate() {
+		long hits = this.hits.sum();
+		long lookups = hits+misses.sum();
+		return lookups==0?0:(double)hits/lookups;
+	}
+}
@@ -0,0 +1,161 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import auth.eng.textManager.util.LongIntHashMap;
+
+/**
+ * Trie over words (e.g. the string features of a {@link Vocabulary}) that finds all words within a given
+ * Levenshtein distance of a query. The trie is traversed while computing one row of the Levenshtein
+ * table per character, so that shared prefixes are only compared once and whole subtrees are skipped as soon
+ * as every entry of the row exceeds the allowed distance. Distances are case sensitive, matching
+ * {@link LevenshteinDistance#computeLevenshteinDistance(String, String)}.
+ * <br>
+ * Nodes are stored in primitive arrays and children are found through a single {@link LongIntHashMap}
+ * while inserting, which keeps million-word indexes compact.
+ * @author Emmanouil Krasanakis
+ */
+public class FuzzyIndex {
+	private char[] labels = new char[16];
+	private int[] firstChild = new int[16];
+	private int[] nextSibling = new int[16];
+	private int[] wordIds = new int[16];
+	private String[] words = new String[16];
+	private int nodes = 0;
+	private int size = 0;
+	private int maxDepth = 0;
+	private LongIntHashMap children = new LongIntHashMap();
+	
+	/**
+	 * A word found by {@link FuzzyIndex#search(String, int)}.
+	 */
+	public static class Match {
+		private final String word;
+		private final int id;
+		private final int distance;
+		private Match(String word, int id, int distance) {
+			this.word = word;
+			this.id = id;
+			this.distance = distance;
+		}
+		public String getWord() {
+			return word;
+		}
+		/**
+		 * @return the id with which the word was added (e.g. its vocabulary id)
+		 */
+		public int getId() {
+			return id;
+		}
+		public int getDistance() {
+			return distance;
+		}
+		@Override
+		public String toString() {
+			return word+" ("+distance+")";
+		}
+	}
+	
+	public FuzzyIndex() {
+		createNode('\0');
+	}
+	/**
+	 * Indexes all string features of the given vocabulary, using their vocabulary ids. Features added to the
+	 * vocabulary afterwards are not indexed.
+	 * @param vocabulary the vocabulary to index
+	 */
+	public FuzzyIndex(Vocabulary vocabulary) {
+		this();
+		for(int id=0;id<vocabulary.size();id++)
+			if(vocabulary.getText(id)!=null)
+				add(vocabulary.getText(id), id);
+	}
+	private int createNode(char label) {
+		if(nodes==labels.length) {
+			labels = Arrays.copyOf(labels, nodes*2);
+			firstChild = Arrays.copyOf(firstChild, nodes*2);
+			nextSibling = Arrays.copyOf(nextSibling, nodes*2);
+			wordIds = Arrays.copyOf(wordIds, nodes*2);
+			words = Arrays.copyOf(words, nodes*2);
+		}
+		labels[nodes] = label;
+		firstChild[nodes] = -1;
+		nextSibling[nodes] = -1;
+		wordIds[nodes] = -1;
+		return nodes++;
+	}
+	/**
+	 * @return the number of indexed words
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * @param word the word to index
+	 * @param id a non-negative id returned alongside the word by searches (replaces the id of a previously added equal word)
+	 */
+	public void add(String word, int id) {
+		if(id<0)
+			throw new IllegalArgumentException("Word ids should be non-negative");
+		int node = 0;
+		for(int i=0;i<word.length();i++) {
+			long key = ((long)node << 16) | word.charAt(i);
+			int child = children.get(key);
+			if(child==-1) {
+				child = createNode(word.charAt(i));
+				nextSibling[child] = firstChild[node];
+				firstChild[node] = child;
+				children.put(key, child);
+			}
+			node = child;
+		}
+		if(wordIds[node]==-1)
+			size++;
+		wordIds[node] = id;
+		words[node] = word;
+		maxDepth = Math.max(maxDepth, word.length());
+	}
+	/**
+	 * @param query the word to look for
+	 * @param maxDistance the maximum Levenshtein distance of matches
+	 * @return all indexed words within the given distance of the query
+	 */
+	public ArrayList<Match> search(String query, int maxDistance) {
+		ArrayList<Match> matches = new ArrayList<Match>();
+		if(maxDistance<0)
+			return matches;
+		int depth = Math.min(maxDepth, query.length()+maxDistance);
+		int[][] rows = new int[depth+1][query.length()+1];
+		for(int j=0;j<=query.length();j++)
+			rows[0][j] = j;
+		if(wordIds[0]!=-1 && query.length()<=maxDistance)
+			matches.add(new Match(words[0], wordIds[0], query.length()));
+		if(depth==0)//only the root is in reach, e.g. for empty queries without edits
+			return matches;
+		for(int child=firstChild[0];child!=-1;child=nextSibling[child])
+			search(child, 1, query, maxDistance, rows, matches);
+		return matches;
+	}
+	private void search(int node, int depth, String query, int maxDistance, int[][] rows, ArrayList<Match> matches) {
+		int[] previous = rows[depth-1];
+		int[] row = rows[depth];
+		char label = labels[node];
+		row[0] = depth;
+		int min = depth;
+		for(int j=1;j<row.length;j++) {
+			int value = previous[j-1]+(query.charAt(j-1)==label?0:1);
+			value = Math.min(value, previous[j]+1);
+			value = Math.min(value, row[j-1]+1);
+			row[j] = value;
+			if(value<min)
+				min = value;
+		}
+		if(wordIds[node]!=-1 && row[row.length-1]<=maxDistance)
+			matches.add(new Match(words[node], wordIds[node], row[row.length-1]));
+		if(min>maxDistance || depth+1>=rows.length)
+			return;
+		for(int child=firstChild[node];child!=-1;child=nextSibling[child])
+			search(child, depth+1, query, maxDistance, rows, matches);
+	}
+}
@@ -0,0 +1,302 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Document whose sentences and features are kept up to date under edits, such as the ones of an editor. Sentences
+ * are the ones of {@link WordModel#getTextSentences(String)} and are vectorized by a {@link WordModel} into term
+ * frequency vectors, whose sum gives the document's feature counts.
+ * <br>
+ * The document is kept as lines, which are grouped into the line ranges of sentences according to the net bracket
+ * depth after each line. After an edit, lines are only regrouped from the start of the sentence containing the edit
+ * until the grouping meets a previous sentence boundary at the same bracket depth, after which the previous sentences
+ * are reused. Only regrouped sentences are split and vectorized again (the remaining bookkeeping only shifts arrays)
+ * and document counts are updated by the difference.
+ * The end of the document, where a final dot and trailing empty lines affect splitting, is split through a
+ * {@link SentenceSegmenter}.
+ * <br>
+ * Sentences are vectorized without being counted in the model's {@link Vocabulary}, so that vectorizing them again
+ * after each edit neither inflates its statistics nor triggers pruning by its streaming cap. Documents follow the
+ * pruning of the vocabulary until they are closed, which should happen once they are no longer edited (e.g. when
+ * an editor closes them) so that the vocabulary does not keep them.
+ * @author Emmanouil Krasanakis
+ */
+public class IncrementalDocument implements AutoCloseable {
+	private final WordModel model;
+	private final Vocabulary vocabulary;
+	private final Consumer<int[]> remapListener = this::remap;
+	private final ArrayList<String> lines = new ArrayList<String>();
+	private int[] lineDepths = new int[0];
+	private final ArrayList<Group> groups = new ArrayList<Group>();
+	private int[] groupStarts = new int[16];//the first line of each group
+	private double[] featureCounts = new double[16];
+	
+	/**
+	 * Consecutive lines that comprise one sentence or, at the end of the document, any number of sentences.
+	 */
+	private static class Group {
+		private final int lineCount;
+		private final int startDepth;
+		private final String[] sentences;
+		private final SparseVector[] vectors;
+		Group(int lineCount, int startDepth, String[] sentences, SparseVector[] vectors) {
+			this.lineCount = lineCount;
+			this.startDepth = startDepth;
+			this.sentences = sentences;
+			this.vectors = vectors;
+		}
+	}
+	
+	/**
+	 * @param model the model that vectorizes sentences (its vocabulary may be pruned, in which case stored vectors are remapped)
+	 * @param text the initial text of the document
+	 */
+	public IncrementalDocument(WordModel model, String text) {
+		this.model = model;
+		vocabulary = model.getVocabulary();
+		vocabulary.addRemapListener(remapListener);
+		String[] initialLines = splitLines(text);
+		lines.addAll(Arrays.asList(initialLines));
+		lineDepths = new int[initialLines.length];
+		for(int i=0;i<initialLines.length;i++)
+			lineDepths[i] = depth(initialLines[i]);
+		regroup(0, 0, 0, 0, 0);
+	}
+	private static String[] splitLines(String text) {
+		return text.split("\n", -1);
+	}
+	private static int depth(String line) {
+		int depth = 0;
+		for(int i=0;i<line.length();i++) {
+			char c = line.charAt(i);
+			if(c=='(' || c=='{' || c=='[')
+				depth++;
+			else if(c==')' || c=='}' || c==']')
+				depth--;
+		}
+		return depth;
+	}
+	private static boolean isBlank(String line) {
+		for(int i=0;i<line.length();i++) {
+			char c = line.charAt(i);
+			if(c!=' ' && c!='\t' && c!='\u000B' && c!='\f' && c!='\r' && c!='\u0085' && c!='\u2028' && c!='\u2029')
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Replaces the text between two positions, which are given as line and column numbers (starting from zero)
+	 * as in editor change events.
+	 * @param startLine the line of the first replaced character
+	 * @param startColumn the column of the first replaced character
+	 * @param endLine the line of the end of the replaced text
+	 * @param endColumn the column after the last replaced character
+	 * @param replacement the new text
+	 * @return the number of sentences that were vectorized again
+	 */
+	public int edit(int startLine, int startColumn, int endLine, int endColumn, String replacement) {
+		if(startLine<0 || endLine>=lines.size() || startLine>endLine || (startLine==endLine && startColumn>endColumn))
+			throw new IllegalArgumentException("Invalid edit range");
+		String[] newLines = splitLines(lines.get(startLine).substring(0, startColumn)+replacement+lines.get(endLine).substring(endColumn));
+		int removedLines = endLine-startLine+1;
+		// replace the edited lines
+		List<String> edited = lines.subList(startLine, endLine+1);
+		edited.clear();
+		edited.addAll(Arrays.asList(newLines));
+		if(lines.size()>lineDepths.length)
+			lineDepths = Arrays.copyOf(lineDepths, Math.max(lines.size(), lineDepths.length*2));
+		System.arraycopy(lineDepths, endLine+1, lineDepths, startLine+newLines.length, lines.size()-startLine-newLines.length);
+		for(int i=0;i<newLines.length;i++)
+			lineDepths[startLine+i] = depth(newLines[i]);
+		// regroup from the group that contains the start of the edit, or the end of the document if it comes earlier
+		int firstLine = Math.min(startLine, getTailLine());
+		int group = Arrays.binarySearch(groupStarts, 0, groups.size(), firstLine);
+		if(group<0)
+			group = -group-2;//the group that starts before the line
+		return regroup(group, groupStarts[group], groups.get(group).startDepth, startLine+newLines.length, newLines.length-removedLines);
+	}
+	/**
+	 * @return the last line that is not blank (or the first line), from whose sentence onwards the end of the
+	 * document can affect splitting
+	 */
+	private int getTailLine() {
+		int line = lines.size()-1;
+		while(line>0 && isBlank(lines.get(line)))
+			line--;
+		if(line>0 && lines.get(line).startsWith("."))//a final dot can make this and the preceding blank lines trailing empty fragments
+			do {
+				line--;
+			}
+			while(line>0 && isBlank(lines.get(line)));
+		return line;
+	}
+	/**
+	 * Regroups lines from the start of a group until the grouping converges with a previous group boundary that
+	 * lies after the edited lines.
+	 * @param group the first group to replace
+	 * @param startLine the first line of that group
+	 * @param startDepth the bracket depth before that line
+	 * @param editEnd the first line after the edited ones
+	 * @param shift the number of lines added (or removed, if negative) by the edit
+	 * @return the number of vectorized sentences
+	 */
+	private int regroup(int group, int startLine, int startDepth, int editEnd, int shift) {
+		int tailLine = getTailLine();
+		ArrayList<Group> newGroups = new ArrayList<Group>();
+		int vectorized = 0;
+		int line = startLine;
+		int depth = startDepth;
+		int oldGroup = group;
+		int oldStart = startLine;//line of the old group before the edit
+		int oldEditEnd = editEnd-shift;
+		int oldEnd = groups.size();
+		while(true) {
+			if(line>=editEnd) {
+				// groups that start after the edited lines keep their contents if they start at the same depth
+				while(oldGroup<groups.size() && (oldStart<oldEditEnd || oldStart+shift<line))
+					oldStart += groups.get(oldGroup++).lineCount;
+				if(oldGroup<groups.size() && oldStart+shift==line && groups.get(oldGroup).startDepth==depth) {
+					oldEnd = oldGroup;
+					break;
+				}
+			}
+			int end = line;
+			int endDepth = depth+lineDepths[end];
+			while(endDepth>0 && end+1<lines.size())
+				endDepth += lineDepths[++end];
+			if(end>=tailLine) {
+				StringBuilder text = new StringBuilder();
+				for(int i=line;i<lines.size();i++) {
+					if(i!=line)
+						text.append('\n');
+					text.append(lines.get(i));
+				}
+				ArrayList<String> sentences = new ArrayList<String>();
+				SentenceSegmenter segmenter = new SentenceSegmenter(text, depth);
+				while(segmenter.next())
+					sentences.add(segmenter.getSentence());
+				newGroups.add(createGroup(lines.size()-line, depth, sentences.toArray(new String[sentences.size()])));
+				vectorized += sentences.size();
+				break;
+			}
+			StringBuilder sentence = new StringBuilder(lines.get(line));
+			for(int i=line+1;i<=end;i++)
+				sentence.append(' ').append(lines.get(i));
+			newGroups.add(createGroup(end-line+1, depth, new String[]{sentence.toString()}));
+			vectorized++;
+			line = end+1;
+			depth = endDepth;
+		}
+		List<Group> replaced = groups.subList(group, oldEnd);
+		for(Group old : replaced)
+			for(SparseVector vector : old.vectors)
+				count(vector, -1);
+		int oldSize = groups.size();
+		replaced.clear();
+		replaced.addAll(newGroups);
+		// shift the starts of the following groups and set the ones of the new groups
+		if(groups.size()>groupStarts.length)
+			groupStarts = Arrays.copyOf(groupStarts, Math.max(groups.size(), groupStarts.length*2));
+		int newEnd = group+newGroups.size();
+		System.arraycopy(groupStarts, oldEnd, groupStarts, newEnd, oldSize-oldEnd);
+		for(int i=newEnd;i<groups.size();i++)
+			groupStarts[i] += shift;
+		for(int i=group;i<newEnd;i++)
+			groupStarts[i] = i==group?startLine:groupStarts[i-1]+groups.get(i-1).lineCount;
+		return vectorized;
+	}
+	private Group createGroup(int lineCount, int startDepth, String[] sentences) {
+		SparseVector[] vectors = new SparseVector[sentences.length];
+		for(int i=0;i<sentences.length;i++) {
+			vectors[i] = model.getSentenceTermFrequencyVector(sentences[i], false);
+			count(vectors[i], 1);
+		}
+		return new Group(lineCount, startDepth, sentences, vectors);
+	}
+	private void count(SparseVector vector, int sign) {
+		if(vector.size()!=0 && vector.getId(vector.size()-1)>=featureCounts.length)
+			featureCounts = Arrays.copyOf(featureCounts, Math.max(featureCounts.length*2, vector.getId(vector.size()-1)+1));
+		for(int i=0;i<vector.size();i++)
+			featureCounts[vector.getId(i)] += sign*vector.getValue(i);
+	}
+	private void remap(int[] remap) {
+		for(int g=0;g<groups.size();g++) {
+			SparseVector[] vectors = groups.get(g).vectors;
+			for(int i=0;i<vectors.length;i++)
+				vectors[i] = vectors[i].remap(remap);
+		}
+		double[] counts = new double[featureCounts.length];
+		for(int id=0;id<remap.length && id<featureCounts.length;id++)
+			if(remap[id]!=-1)
+				counts[remap[id]] = featureCounts[id];
+		featureCounts = counts;
+	}
+	
+	/**
+	 * Stops following the pruning of the model's vocabulary, after which the document should no longer be used.
+	 */
+	@Override
+	public void close() {
+		vocabulary.removeRemapListener(remapListener);
+	}
+	
+	/**
+	 * @return the text of the document
+	 */
+	public String getText() {
+		return String.join("\n", lines);
+	}
+	/**
+	 * @return the number of lines of the document
+	 */
+	public int getLineCount() {
+		return lines.size();
+	}
+	/**
+	 * @return the sentences of the document, as obtained by {@link WordModel#getTextSentences(String)}
+	 */
+	public String[] getSentences() {
+		ArrayList<String> sentences = new ArrayList<String>();
+		for(Group group : groups)
+			sentences.addAll(Arrays.asList(group.sentences));
+		return sentences.toArray(new String[sentences.size()]);
+	}
+	/**
+	 * @return the term frequency vector of each sentence, as obtained by {@link WordModel#getSentenceTermFrequencyVector(String)}
+	 */
+	public SparseVector[] getSentenceVectors() {
+		ArrayList<SparseVector> vectors = new ArrayList<SparseVector>();
+		for(Group group : groups)
+			vectors.addAll(Arrays.asList(group.vectors));
+		return vectors.toArray(new SparseVector[vectors.size()]);
+	}
+	/**
+	 * @param id a feature id of the model's vocabulary
+	 * @return the number of times the feature occurs in the document
+	 */
+	public double getFeatureCount(int id) {
+		return id<featureCounts.length?featureCounts[id]:0;
+	}
+	/**
+	 * @return the term frequency vector of the whole document (the sum of its sentence vectors)
+	 */
+	public SparseVector getTermFrequencyVector() {
+		int size = 0;
+		for(double count : featureCounts)
+			if(count!=0)
+				size++;
+		int[] ids = new int[size];
+		double[] values = new double[size];
+		size = 0;
+		for(int id=0;id<featureCounts.length;id++)
+			if(featureCounts[id]!=0) {
+				ids[size] = id;
+				values[size++] = featureCounts[id];
+			}
+		return new SparseVector(ids, values);
+	}
+}
@@ -0,0 +1,325 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from the feature ids of any {@link WordModel} to the stored sentences (documents) that contain them,
+ * which retrieves the top-k most similar documents to a query by cosine similarity or BM25.
+ * <br>
+ * Posting lists store document ids as varint-encoded gaps followed by the posting's weight and are split into blocks
+ * of {@value #BLOCK_SIZE} postings, whose last document ids are kept to skip blocks without decoding them.
+ * Queries are evaluated with MaxScore dynamic pruning: posting lists whose score upper bounds cannot lift a document
+ * into the current top-k are only probed for documents found through the remaining lists.
+ * <br>
+ * Documents can be added while other threads search; searches share a read lock and additions take a write lock.
+ * @author Emmanouil Krasanakis
+ */
+public class InvertedIndex {
+	private static final int BLOCK_SIZE = 128;
+	
+	public enum Scoring {
+		/** Cosine similarity between the query and the stored vectors */
+		COSINE,
+		/** Okapi BM25, for which stored vectors and queries should be term frequency vectors */
+		BM25
+	}
+	
+	/**
+	 * A retrieved document and its score.
+	 */
+	public static class Result {
+		private final int document;
+		private final double score;
+		private Result(int document, double score) {
+			this.document = document;
+			this.score = score;
+		}
+		/**
+		 * @return the id returned by {@link InvertedIndex#add(SparseVector)} for the document
+		 */
+		public int getDocument() {
+			return document;
+		}
+		public double getScore() {
+			return score;
+		}
+		@Override
+		public String toString() {
+			return document+": "+score;
+		}
+	}
+	
+	private final Scoring scoring;
+	private final double k1;
+	private final double b;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private byte[][] postings = new byte[16][];
+	private int[] postingBytes = new int[16];
+	private int[] postingCounts = new int[16];
+	private int[] lastDocuments = new int[16];
+	private int[][] blockLastDocuments = new int[16][];
+	private int[][] blockOffsets = new int[16][];
+	private float[] maxWeights = new float[16];
+	private int[] minLengths = new int[16];
+	private int[] documentLengths = new int[16];
+	private int documents = 0;
+	private double totalLength = 0;
+	
+	public InvertedIndex(Scoring scoring) {
+		this(scoring, 1.2, 0.75);
+	}
+	/**
+	 * @param scoring the scoring function
+	 * @param k1 the term frequency saturation of BM25
+	 * @param b the length normalization of BM25
+	 */
+	public InvertedIndex(Scoring scoring, double k1, double b) {
+		this.scoring = scoring;
+		this.k1 = k1;
+		this.b = b;
+	}
+	/**
+	 * @return the number of indexed documents
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documents;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	/**
+	 * @param vector the feature vector of a document (a term frequency vector for {@link Scoring#BM25})
+	 * @return the id of the document, which is the number of previously added documents
+	 */
+	public int add(SparseVector vector) {
+		lock.writeLock().lock();
+		try {
+			int document = documents++;
+			if(document==documentLengths.length)
+				documentLengths = Arrays.copyOf(documentLengths, document*2);
+			double norm = scoring==Scoring.COSINE?vector.norm():1;
+			int length = (int)Math.round(vector.sum());
+			documentLengths[document] = length;
+			totalLength += length;
+			for(int i=0;i<vector.size();i++)
+				if(vector.getValue(i)!=0)
+					addPosting(vector.getId(i), document, (float)(vector.getValue(i)/norm), length);
+			return document;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	private void addPosting(int feature, int document, float weight, int length) {
+		if(feature>=postings.length) {
+			int capacity = Math.max(feature+1, postings.length*2);
+			postings = Arrays.copyOf(postings, capacity);
+			postingBytes = Arrays.copyOf(postingBytes, capacity);
+			postingCounts = Arrays.copyOf(postingCounts, capacity);
+			lastDocuments = Arrays.copyOf(lastDocuments, capacity);
+			blockLastDocuments = Arrays.copyOf(blockLastDocuments, capacity);
+			blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+			maxWeights = Arrays.copyOf(maxWeights, capacity);
+			minLengths = Arrays.copyOf(minLengths, capacity);
+		}
+		if(postings[feature]==null) {
+			postings[feature] = new byte[16];
+			blockLastDocuments[feature] = new int[1];
+			blockOffsets[feature] = new int[1];
+			lastDocuments[feature] = -1;
+			minLengths[feature] = Integer.MAX_VALUE;
+		}
+		int count = postingCounts[feature];
+		if(count%BLOCK_SIZE==0) {
+			int block = count/BLOCK_SIZE;
+			if(block==blockOffsets[feature].length) {
+				blockOffsets[feature] = Arrays.copyOf(blockOffsets[feature], block*2);
+				blockLastDocuments[feature] = Arrays.copyOf(blockLastDocuments[feature], block*2);
+			}
+			blockOffsets[feature][block] = postingBytes[feature];
+		}
+		byte[] bytes = postings[feature];
+		int position = postingBytes[feature];
+		if(position+9>bytes.length)
+			postings[feature] = bytes = Arrays.copyOf(bytes, Math.max(bytes.length*2, position+9));
+		int gap = document-lastDocuments[feature];
+		while((gap & ~0x7F)!=0) {
+			bytes[position++] = (byte)((gap & 0x7F) | 0x80);
+			gap >>>= 7;
+		}
+		bytes[position++] = (byte)gap;
+		int bits = Float.floatToIntBits(weight);
+		bytes[position++] = (byte)(bits >>> 24);
+		bytes[position++] = (byte)(bits >>> 16);
+		bytes[position++] = (byte)(bits >>> 8);
+		bytes[position++] = (byte)bits;
+		postingBytes[feature] = position;
+		postingCounts[feature] = count+1;
+		lastDocuments[feature] = document;
+		blockLastDocuments[feature][count/BLOCK_SIZE] = document;
+		maxWeights[feature] = Math.max(maxWeights[feature], weight);
+		minLengths[feature] = Math.min(minLengths[feature], length);
+	}
+	
+	/**
+	 * Sequential reader of a posting list that can skip whole blocks.
+	 */
+	private class Cursor {
+		private final int feature;
+		private final double queryWeight;
+		private final double idf;
+		private final double averageLength;
+		private final double upperBound;
+		private final byte[] bytes;
+		private final int end;
+		private int position;
+		private int block = 0;
+		private int read = 0;
+		private int document = -1;
+		private float weight;
+		Cursor(int feature, double queryWeight, double averageLength) {
+			this.feature = feature;
+			this.averageLength = averageLength;
+			this.queryWeight = queryWeight;
+			bytes = postings[feature];
+			end = postingBytes[feature];
+			if(scoring==Scoring.BM25) {
+				int frequency = postingCounts[feature];
+				idf = Math.log(1+(documents-frequency+0.5)/(frequency+0.5));
+				upperBound = score(maxWeights[feature], minLengths[feature]);
+			}
+			else {
+				idf = 1;
+				upperBound = queryWeight*maxWeights[feature];
+			}
+			next();
+		}
+		private double score(double weight, int length) {
+			if(scoring==Scoring.COSINE)
+				return queryWeight*weight;
+			double lengthNormalization = averageLength>0?1-b+b*length/averageLength:1;
+			return queryWeight*idf*weight*(k1+1)/(weight+k1*lengthNormalization);
+		}
+		double score() {
+			return score(weight, documentLengths[document]);
+		}
+		void next() {
+			if(position>=end) {
+				document = Integer.MAX_VALUE;
+				return;
+			}
+			int gap = 0;
+			int shift = 0;
+			byte value;
+			do {
+				value = bytes[position++];
+				gap |= (value & 0x7F) << shift;
+				shift += 7;
+			}
+			while(value<0);
+			document += gap;
+			weight = Float.intBitsToFloat(((bytes[position] & 0xFF) << 24) | ((bytes[position+1] & 0xFF) << 16)
+					| ((bytes[position+2] & 0xFF) << 8) | (bytes[position+3] & 0xFF));
+			position += 4;
+			if(++read%BLOCK_SIZE==0)
+				block++;
+		}
+		void advance(int target) {
+			if(document>=target)
+				return;
+			int[] lastInBlock = blockLastDocuments[feature];
+			int blocks = (postingCounts[feature]+BLOCK_SIZE-1)/BLOCK_SIZE;
+			if(block<blocks && lastInBlock[block]<target) {
+				while(block<blocks && lastInBlock[block]<target)
+					block++;
+				if(block==blocks) {
+					document = Integer.MAX_VALUE;
+					return;
+				}
+				document = lastInBlock[block-1];
+				position = blockOffsets[feature][block];
+				read = block*BLOCK_SIZE;
+			}
+			while(document<target)
+				next();
+		}
+	}
+	
+	/**
+	 * @param query the feature vector of the query (a term frequency vector for {@link Scoring#BM25})
+	 * @param k the maximum number of results
+	 * @return the at most k documents with the highest positive scores, in descending score order
+	 */
+	public ArrayList<Result> search(SparseVector query, int k) {
+		ArrayList<Result> results = new ArrayList<Result>();
+		if(k<=0)
+			return results;
+		lock.readLock().lock();
+		try {
+			double averageLength = documents==0?0:totalLength/documents;
+			double norm = scoring==Scoring.COSINE?query.norm():1;
+			ArrayList<Cursor> active = new ArrayList<Cursor>();
+			for(int i=0;i<query.size();i++) {
+				int feature = query.getId(i);
+				if(query.getValue(i)>0 && feature<postings.length && postings[feature]!=null)
+					active.add(new Cursor(feature, query.getValue(i)/norm, averageLength));
+			}
+			active.sort((a, c) -> Double.compare(a.upperBound, c.upperBound));
+			Cursor[] cursors = active.toArray(new Cursor[active.size()]);
+			double[] cumulativeBounds = new double[cursors.length];
+			for(int i=0;i<cursors.length;i++)
+				cumulativeBounds[i] = (i==0?0:cumulativeBounds[i-1])+cursors[i].upperBound;
+			PriorityQueue<Result> top = new PriorityQueue<Result>(k, (a, c) -> Double.compare(a.score, c.score));
+			double threshold = 0;
+			int firstEssential = 0;
+			while(true) {
+				while(firstEssential<cursors.length && top.size()==k && cumulativeBounds[firstEssential]<=threshold)
+					firstEssential++;
+				if(firstEssential==cursors.length)
+					break;
+				int document = Integer.MAX_VALUE;
+				for(int i=firstEssential;i<cursors.length;i++)
+					document = Math.min(document, cursors[i].document);
+				if(document==Integer.MAX_VALUE)
+					break;
+				double score = 0;
+				for(int i=firstEssential;i<cursors.length;i++)
+					if(cursors[i].document==document) {
+						score += cursors[i].score();
+						cursors[i].next();
+					}
+				for(int i=firstEssential-1;i>=0;i--) {
+					if(score+cumulativeBounds[i]<=threshold)
+						break;
+					cursors[i].advance(document);
+					if(cursors[i].document==document)
+						score += cursors[i].score();
+				}
+				if(score<=0)
+					continue;
+				if(top.size()<k)
+					top.add(new Result(document, score));
+				else if(score>threshold) {
+					top.poll();
+					top.add(new Result(document, score));
+				}
+				if(top.size()==k)
+					threshold = top.peek().score;
+			}
+			while(!top.isEmpty())
+				results.add(top.poll());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		Collections.reverse(results);
+		return results;
+	}
+}
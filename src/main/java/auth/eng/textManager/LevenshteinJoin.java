@@ -0,0 +1,295 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds all pairs between two collections of strings (or tokenized sentences) whose Levenshtein similarity,
+ * as computed by {@link LevenshteinDistance#levenshteinSimilarity(String, String)} and
+ * {@link LevenshteinDistance#levenshteinSentenceSimilarity(String[], String[])}, reaches a given threshold.
+ * <br>
+ * Both collections are sorted by length and split into fork-join tiles. Tiles whose lengths are too far apart are
+ * skipped whole, pairs in the remaining tiles are filtered by length and q-gram counts and only the survivors are
+ * verified with a banded Levenshtein computation that stops as soon as the distance bound is exceeded.
+ * @author Emmanouil Krasanakis
+ */
+public class LevenshteinJoin {
+	private static final int TILE_SIZE = 1 << 12;
+	private final int[][] lhs;
+	private final int[][] rhs;
+	private final long[][] lhsGrams;
+	private final long[][] rhsGrams;
+	private final int[] lhsOrder;
+	private final int[] rhsOrder;
+	private final int q;
+	private final double threshold;
+	private final boolean emptyIsDissimilar;
+	
+	/**
+	 * A pair of matching elements, identified by their positions in the two collections.
+	 */
+	public static class Match {
+		private final int first;
+		private final int second;
+		private final double similarity;
+		private Match(int first, int second, double similarity) {
+			this.first = first;
+			this.second = second;
+			this.similarity = similarity;
+		}
+		/**
+		 * @return the position of the match in the first collection
+		 */
+		public int getFirst() {
+			return first;
+		}
+		/**
+		 * @return the position of the match in the second collection
+		 */
+		public int getSecond() {
+			return second;
+		}
+		public double getSimilarity() {
+			return similarity;
+		}
+		@Override
+		public String toString() {
+			return "("+first+", "+second+"): "+similarity;
+		}
+	}
+	
+	/**
+	 * @param lhs the first collection of strings
+	 * @param rhs the second collection of strings
+	 * @param threshold the minimum Levenshtein similarity of matches
+	 * @return all matching pairs, ordered by their positions in the first and then the second collection
+	 */
+	public static ArrayList<Match> joinStrings(List<String> lhs, List<String> rhs, double threshold) {
+		return new LevenshteinJoin(toCharacters(lhs), toCharacters(rhs), 2, threshold, false).join();
+	}
+	/**
+	 * Words are compared case-insensitively, as in {@link LevenshteinDistance#computeLevenshteinSentenceDistance(String[], String[])}.
+	 * @param lhs the first collection of word arrays
+	 * @param rhs the second collection of word arrays
+	 * @param threshold the minimum Levenshtein similarity of matches
+	 * @return all matching pairs, ordered by their positions in the first and then the second collection
+	 */
+	public static ArrayList<Match> joinSentences(List<String[]> lhs, List<String[]> rhs, double threshold) {
+		HashMap<String, Integer> wordIds = new HashMap<String, Integer>();
+		return new LevenshteinJoin(toWords(lhs, wordIds), toWords(rhs, wordIds), 1, threshold, true).join();
+	}
+	private static int[][] toCharacters(List<String> strings) {
+		int[][] sequences = new int[strings.size()][];
+		for(int i=0;i<sequences.length;i++) {
+			String string = strings.get(i);
+			sequences[i] = new int[string.length()];
+			for(int j=0;j<string.length();j++)
+				sequences[i][j] = string.charAt(j);
+		}
+		return sequences;
+	}
+	private static int[][] toWords(List<String[]> sentences, HashMap<String, Integer> wordIds) {
+		int[][] sequences = new int[sentences.size()][];
+		for(int i=0;i<sequences.length;i++) {
+			String[] words = sentences.get(i);
+			sequences[i] = new int[words.length];
+			for(int j=0;j<words.length;j++) {
+				//case folding under which two words are equal exactly when equalsIgnoreCase holds
+				char[] folded = words[j].toCharArray();
+				for(int k=0;k<folded.length;k++)
+					folded[k] = Character.toLowerCase(Character.toUpperCase(folded[k]));
+				String key = new String(folded);
+				Integer id = wordIds.get(key);
+				if(id==null)
+					wordIds.put(key, id = wordIds.size());
+				sequences[i][j] = id;
+			}
+		}
+		return sequences;
+	}
+	private LevenshteinJoin(int[][] lhs, int[][] rhs, int q, double threshold, boolean emptyIsDissimilar) {
+		this.lhs = lhs;
+		this.rhs = rhs;
+		this.q = q;
+		this.threshold = threshold;
+		this.emptyIsDissimilar = emptyIsDissimilar;
+		lhsOrder = orderByLength(lhs);
+		rhsOrder = orderByLength(rhs);
+		lhsGrams = grams(lhs);
+		rhsGrams = grams(rhs);
+	}
+	private static int[] orderByLength(int[][] sequences) {
+		Integer[] order = new Integer[sequences.length];
+		for(int i=0;i<order.length;i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingInt(i -> sequences[i].length));
+		int[] result = new int[order.length];
+		for(int i=0;i<order.length;i++)
+			result[i] = order[i];
+		return result;
+	}
+	private long[][] grams(int[][] sequences) {
+		long[][] grams = new long[sequences.length][];
+		for(int i=0;i<sequences.length;i++) {
+			int[] sequence = sequences[i];
+			grams[i] = new long[Math.max(0, sequence.length-q+1)];
+			for(int j=0;j<grams[i].length;j++)
+				grams[i][j] = q==1?sequence[j]:((long)sequence[j] << 32) | (sequence[j+1] & 0xFFFFFFFFL);
+			Arrays.sort(grams[i]);
+		}
+		return grams;
+	}
+	/**
+	 * @return the largest distance for which two sequences whose longest length is the given one are similar enough, or -1 if none
+	 */
+	private int maxDistance(int longest) {
+		if(longest==0)
+			return -1;
+		int distance = (int)Math.floor((1-threshold)*longest);
+		while(distance<longest && 1-(double)(distance+1)/longest>=threshold)
+			distance++;
+		while(distance>=0 && 1-(double)distance/longest<threshold)
+			distance--;
+		return Math.min(distance, longest);
+	}
+	private boolean lengthsCompatible(int shorter, int longer) {
+		return longer-shorter<=maxDistance(longer);
+	}
+	private ArrayList<Match> join() {
+		ArrayList<Match> matches = ForkJoinPool.commonPool().invoke(new Tile(0, lhs.length, 0, rhs.length));
+		matches.sort((a, b) -> a.first!=b.first?Integer.compare(a.first, b.first):Integer.compare(a.second, b.second));
+		return matches;
+	}
+	
+	private class Tile extends RecursiveTask<ArrayList<Match>> {
+		private static final long serialVersionUID = 1L;
+		private final int lhsFrom, lhsTo, rhsFrom, rhsTo;
+		Tile(int lhsFrom, int lhsTo, int rhsFrom, int rhsTo) {
+			this.lhsFrom = lhsFrom;
+			this.lhsTo = lhsTo;
+			this.rhsFrom = rhsFrom;
+			this.rhsTo = rhsTo;
+		}
+		@Override
+		protected ArrayList<Match> compute() {
+			if(lhsFrom>=lhsTo || rhsFrom>=rhsTo || !overlapping())
+				return new ArrayList<Match>();
+			int lhsCount = lhsTo-lhsFrom;
+			int rhsCount = rhsTo-rhsFrom;
+			if((long)lhsCount*rhsCount<=TILE_SIZE || (lhsCount==1 && rhsCount==1))
+				return verify();
+			Tile first, second;
+			if(lhsCount>=rhsCount) {
+				int middle = (lhsFrom+lhsTo)/2;
+				first = new Tile(lhsFrom, middle, rhsFrom, rhsTo);
+				second = new Tile(middle, lhsTo, rhsFrom, rhsTo);
+			}
+			else {
+				int middle = (rhsFrom+rhsTo)/2;
+				first = new Tile(lhsFrom, lhsTo, rhsFrom, middle);
+				second = new Tile(lhsFrom, lhsTo, middle, rhsTo);
+			}
+			first.fork();
+			ArrayList<Match> matches = second.compute();
+			matches.addAll(first.join());
+			return matches;
+		}
+		private boolean overlapping() {
+			int lhsMin = lhs[lhsOrder[lhsFrom]].length;
+			int lhsMax = lhs[lhsOrder[lhsTo-1]].length;
+			int rhsMin = rhs[rhsOrder[rhsFrom]].length;
+			int rhsMax = rhs[rhsOrder[rhsTo-1]].length;
+			if(lhsMax<rhsMin)
+				return lengthsCompatible(lhsMax, rhsMin);
+			if(rhsMax<lhsMin)
+				return lengthsCompatible(rhsMax, lhsMin);
+			return true;
+		}
+		private ArrayList<Match> verify() {
+			ArrayList<Match> matches = new ArrayList<Match>();
+			int[] previous = new int[0];
+			int[] current = new int[0];
+			for(int i=lhsFrom;i<lhsTo;i++) {
+				int lhsId = lhsOrder[i];
+				int[] x = lhs[lhsId];
+				for(int j=rhsFrom;j<rhsTo;j++) {
+					int rhsId = rhsOrder[j];
+					int[] y = rhs[rhsId];
+					int longest = Math.max(x.length, y.length);
+					if(x.length==0 || y.length==0) {
+						double similarity = emptyIsDissimilar || longest!=0?0:Double.NaN;
+						if(similarity>=threshold)
+							matches.add(new Match(lhsId, rhsId, similarity));
+						continue;
+					}
+					int bound = maxDistance(longest);
+					if(Math.abs(x.length-y.length)>bound)
+						continue;
+					if(longest-q+1-q*bound>commonGrams(lhsGrams[lhsId], rhsGrams[rhsId]))
+						continue;
+					if(previous.length<=y.length) {
+						previous = new int[y.length+1];
+						current = new int[y.length+1];
+					}
+					int distance = boundedDistance(x, y, bound, previous, current);
+					if(distance<=bound)
+						matches.add(new Match(lhsId, rhsId, 1-(double)distance/longest));
+				}
+			}
+			return matches;
+		}
+	}
+	private static int commonGrams(long[] x, long[] y) {
+		int common = 0;
+		int i = 0, j = 0;
+		while(i<x.length && j<y.length) {
+			if(x[i]==y[j]) {
+				common++;
+				i++;
+				j++;
+			}
+			else if(x[i]<y[j])
+				i++;
+			else
+				j++;
+		}
+		return common;
+	}
+	/**
+	 * @return the Levenshtein distance between the sequences if it is at most the given bound, bound+1 otherwise
+	 */
+	private static int boundedDistance(int[] x, int[] y, int bound, int[] previous, int[] current) {
+		int exceeded = bound+1;
+		for(int j=0;j<=y.length;j++)
+			previous[j] = Math.min(j, exceeded);
+		for(int i=1;i<=x.length;i++) {
+			int from = Math.max(1, i-bound);
+			int to = Math.min(y.length, i+bound);
+			current[0] = Math.min(i, exceeded);
+			if(from>1)
+				current[from-1] = exceeded;
+			int min = current[0];
+			for(int j=from;j<=to;j++) {
+				int value = previous[j-1]+(x[i-1]==y[j-1]?0:1);
+				value = Math.min(value, previous[j]+1);
+				value = Math.min(value, current[j-1]+1);
+				current[j] = Math.min(value, exceeded);
+				if(current[j]<min)
+					min = current[j];
+			}
+			if(to<y.length)
+				current[to+1] = exceeded;
+			if(min>bound)
+				return exceeded;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[y.length];
+	}
+}
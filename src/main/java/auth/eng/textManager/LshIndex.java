@@ -0,0 +1,184 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import auth.eng.textManager.util.LongIntHashMap;
+
+/**
+ * Banded locality-sensitive hashing index over {@link MinHash} signatures, which finds pairs of near-duplicate
+ * feature sets without comparing every pair. Signatures are split into bands of rows and sets whose signatures fully
+ * agree on at least one band become candidates, which are then verified against a Jaccard similarity threshold.
+ * <br>
+ * Signatures are kept in a single <code>int[]</code> and bucket members are chained through primitive arrays.
+ * @author Emmanouil Krasanakis
+ */
+public class LshIndex {
+	private final int bands;
+	private final int rows;
+	private final LongIntHashMap[] bucketHeads;
+	private int[] signatures = new int[0];
+	private int[] previousInBucket = new int[0];
+	private int size = 0;
+	
+	/**
+	 * A pair of indexed items and their estimated Jaccard similarity.
+	 */
+	public static class SimilarPair {
+		private final int first;
+		private final int second;
+		private final double similarity;
+		private SimilarPair(int first, int second, double similarity) {
+			this.first = first;
+			this.second = second;
+			this.similarity = similarity;
+		}
+		public int getFirst() {
+			return first;
+		}
+		public int getSecond() {
+			return second;
+		}
+		public double getSimilarity() {
+			return similarity;
+		}
+		@Override
+		public String toString() {
+			return "("+first+", "+second+"): "+similarity;
+		}
+	}
+	
+	/**
+	 * @param bands the number of bands
+	 * @param rows the number of signature values in each band (bands*rows should match the signature length)
+	 */
+	public LshIndex(int bands, int rows) {
+		if(bands<=0 || rows<=0)
+			throw new IllegalArgumentException("Bands and rows should be positive");
+		this.bands = bands;
+		this.rows = rows;
+		bucketHeads = new LongIntHashMap[bands];
+		for(int band=0;band<bands;band++)
+			bucketHeads[band] = new LongIntHashMap();
+	}
+	/**
+	 * Selects the number of bands and rows whose candidate probability (1-(1-s<sup>rows</sup>)<sup>bands</sup>)
+	 * rises most steeply around the given threshold, preferring configurations that miss fewer similar pairs.
+	 * @param numberOfHashes the signature length of a {@link MinHash}
+	 * @param threshold the Jaccard similarity threshold of interest
+	 * @return an index for signatures of the given length
+	 */
+	public static LshIndex forThreshold(int numberOfHashes, double threshold) {
+		int bestRows = 1;
+		double bestError = Double.POSITIVE_INFINITY;
+		for(int rows=1;rows<=numberOfHashes;rows++) {
+			if(numberOfHashes%rows!=0)
+				continue;
+			int bands = numberOfHashes/rows;
+			double error = 0;
+			for(int step=1;step<100;step++) {
+				double s = step/100.0;
+				double probability = 1-Math.pow(1-Math.pow(s, rows), bands);
+				error += s<threshold?probability:2*(1-probability);//false negatives cost more than extra candidates
+			}
+			if(error<bestError) {
+				bestError = error;
+				bestRows = rows;
+			}
+		}
+		return new LshIndex(numberOfHashes/bestRows, bestRows);
+	}
+	/**
+	 * @return the number of indexed signatures
+	 */
+	public int size() {
+		return size;
+	}
+	private long bandHash(int[] signatures, int offset, int band) {
+		long hash = band;
+		for(int row=0;row<rows;row++)
+			hash = (hash ^ signatures[offset+band*rows+row])*0x9E3779B97F4A7C15L;
+		return hash;
+	}
+	/**
+	 * Indexes a signature, whose item id is the number of previously indexed signatures.
+	 * @param signature a signature of a {@link MinHash} with bands*rows hashes
+	 * @return the item id of the signature
+	 */
+	public int add(int[] signature) {
+		if(signature.length!=bands*rows)
+			throw new IllegalArgumentException("Signature length should be "+(bands*rows));
+		if((size+1)*signature.length>signatures.length) {
+			signatures = Arrays.copyOf(signatures, Math.max((size+1)*signature.length, signatures.length*2));
+			previousInBucket = Arrays.copyOf(previousInBucket, signatures.length/rows);
+		}
+		int item = size++;
+		System.arraycopy(signature, 0, signatures, item*signature.length, signature.length);
+		for(int band=0;band<bands;band++) {
+			long hash = bandHash(signatures, item*signature.length, band);
+			previousInBucket[item*bands+band] = bucketHeads[band].get(hash);
+			bucketHeads[band].put(hash, item);
+		}
+		return item;
+	}
+	/**
+	 * Indexes many signatures, such as the ones obtained by {@link MinHash#signatures(java.util.List)}.
+	 * @param concatenatedSignatures concatenated signatures
+	 */
+	public void addAll(int[] concatenatedSignatures) {
+		int length = bands*rows;
+		for(int offset=0;offset<concatenatedSignatures.length;offset+=length)
+			add(Arrays.copyOfRange(concatenatedSignatures, offset, offset+length));
+	}
+	/**
+	 * @param signature a signature of the same {@link MinHash} as indexed ones
+	 * @param threshold the minimum estimated Jaccard similarity
+	 * @return the item ids of indexed signatures similar to the given one
+	 */
+	public int[] query(int[] signature, double threshold) {
+		LongIntHashMap visited = new LongIntHashMap();
+		int[] found = new int[16];
+		int count = 0;
+		for(int band=0;band<bands;band++) {
+			int item = bucketHeads[band].get(bandHash(signature, 0, band));
+			while(item!=-1) {
+				if(!visited.containsKey(item)) {
+					visited.put(item, 0);
+					if(MinHash.similarity(signature, 0, signatures, item*signature.length, signature.length)>=threshold) {
+						if(count==found.length)
+							found = Arrays.copyOf(found, count*2);
+						found[count++] = item;
+					}
+				}
+				item = previousInBucket[item*bands+band];
+			}
+		}
+		Arrays.sort(found, 0, count);
+		return Arrays.copyOf(found, count);
+	}
+	/**
+	 * Finds all pairs of indexed items that share a band and whose estimated similarity reaches the threshold.
+	 * @param threshold the minimum estimated Jaccard similarity
+	 * @return the found pairs, whose first item id is smaller than the second
+	 */
+	public ArrayList<SimilarPair> getSimilarPairs(double threshold) {
+		ArrayList<SimilarPair> pairs = new ArrayList<SimilarPair>();
+		LongIntHashMap visited = new LongIntHashMap();
+		int length = bands*rows;
+		for(int item=0;item<size;item++)
+			for(int band=0;band<bands;band++) {
+				int other = previousInBucket[item*bands+band];
+				while(other!=-1) {
+					long pair = ((long)other << 32) | item;
+					if(!visited.containsKey(pair)) {
+						visited.put(pair, 0);
+						double similarity = MinHash.similarity(signatures, other*length, signatures, item*length, length);
+						if(similarity>=threshold)
+							pairs.add(new SimilarPair(other, item, similarity));
+					}
+					other = previousInBucket[other*bands+band];
+				}
+			}
+		return pairs;
+	}
+}
@@ -0,0 +1,96 @@
+package auth.eng.textManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Reader} that memory-maps a text file window by window and decodes it directly into the buffers of its
+ * callers. File contents never reside on the heap, so that pairing it with a {@link SentenceSegmenter} processes
+ * arbitrarily large files with a heap footprint that depends only on the length of their sentences.
+ * <pre>
+ * SentenceSegmenter segmenter = new SentenceSegmenter(new MappedTextReader(file));
+ * while(segmenter.next())
+ *     wordModel.getSentenceSparseFeatureVector(segmenter.getSentence());
+ * </pre>
+ * Malformed input is replaced with the charset's replacement character.
+ * @author Emmanouil Krasanakis
+ */
+public class MappedTextReader extends Reader {
+	private static final long DEFAULT_WINDOW_SIZE = 1L << 26;
+	private final FileChannel channel;
+	private final long size;
+	private final long windowSize;
+	private final CharsetDecoder decoder;
+	private long windowStart = 0;
+	private MappedByteBuffer window;
+	private boolean flushed = false;
+	
+	public MappedTextReader(Path file) throws IOException {
+		this(file, StandardCharsets.UTF_8);
+	}
+	public MappedTextReader(Path file, Charset charset) throws IOException {
+		this(file, charset, DEFAULT_WINDOW_SIZE);
+	}
+	/**
+	 * @param file the file to read
+	 * @param charset the charset with which the file is decoded
+	 * @param windowSize the number of bytes mapped at a time (should be larger than a few characters)
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedTextReader(Path file, Charset charset, long windowSize) throws IOException {
+		if(windowSize<16 || windowSize>Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The window size should lie in the range [16, "+Integer.MAX_VALUE+"]");
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.windowSize = windowSize;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		map(0);
+	}
+	private void map(long start) throws IOException {
+		windowStart = start;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size-start));
+	}
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(window==null)
+			throw new IOException("Reader closed");
+		if(len==0)
+			return 0;
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while(true) {
+			boolean lastWindow = windowStart+window.limit()>=size;
+			CoderResult result = decoder.decode(window, out, lastWindow);
+			if(result.isError())
+				result.throwException();
+			if(out.position()!=off)
+				return out.position()-off;
+			if(lastWindow) {
+				if(!flushed) {
+					decoder.flush(out);
+					flushed = true;
+					if(out.position()!=off)
+						return out.position()-off;
+				}
+				return -1;
+			}
+			map(windowStart+window.position());//remaps starting from any partially decoded character
+		}
+	}
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+}
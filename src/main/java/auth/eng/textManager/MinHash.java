@@ -0,0 +1,140 @@
+package auth.eng.textManager;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Generates MinHash signatures of feature sets produced by any {@link WordModel}, whose agreement estimates the
+ * Jaccard similarity between the sets. Signatures are stored in <code>int[]</code> arrays and can be indexed by
+ * an {@link LshIndex} to find near-duplicates.
+ * @author Emmanouil Krasanakis
+ */
+public class MinHash {
+	private final long[] multipliers;
+	private final long[] offsets;
+	
+	public MinHash(int numberOfHashes) {
+		this(numberOfHashes, 0);
+	}
+	/**
+	 * @param numberOfHashes the length of signatures (more hashes yield more accurate similarity estimates)
+	 * @param seed the seed of the hash functions (signatures are only comparable for the same seed)
+	 */
+	public MinHash(int numberOfHashes, long seed) {
+		if(numberOfHashes<=0)
+			throw new IllegalArgumentException("The number of hashes should be positive");
+		Random random = new Random(seed);
+		multipliers = new long[numberOfHashes];
+		offsets = new long[numberOfHashes];
+		for(int i=0;i<numberOfHashes;i++) {
+			multipliers[i] = random.nextLong() | 1;
+			offsets[i] = random.nextLong();
+		}
+	}
+	/**
+	 * @return the length of generated signatures
+	 */
+	public int getNumberOfHashes() {
+		return multipliers.length;
+	}
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+	/**
+	 * @param feature a string feature
+	 * @return a 64-bit hash of the feature
+	 */
+	public static long hash(String feature) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i=0;i<feature.length();i++)
+			hash = (hash ^ feature.charAt(i))*0x100000001b3L;
+		return hash;
+	}
+	/**
+	 * @param features 64-bit identifiers of the set's features (e.g. feature ids, feature keys or hashes)
+	 * @return the MinHash signature of the set (empty sets have a signature of maximal values)
+	 */
+	public int[] signature(long[] features) {
+		int[] signature = new int[multipliers.length];
+		signature(features, signature, 0);
+		return signature;
+	}
+	private void signature(long[] features, int[] signatures, int offset) {
+		for(int i=0;i<multipliers.length;i++) {
+			int min = Integer.MAX_VALUE;
+			for(long feature : features) {
+				int value = (int)(mix(feature*multipliers[i]+offsets[i]) >>> 33);
+				if(value<min)
+					min = value;
+			}
+			signatures[offset+i] = min;
+		}
+	}
+	/**
+	 * @param vector a vector whose non-zero components comprise the feature set
+	 * @return the MinHash signature of the set
+	 */
+	public int[] signature(SparseVector vector) {
+		return signature(toFeatures(vector));
+	}
+	/**
+	 * @param features string features, such as the ones obtained by {@link WordModel#getSentenceFeatures(String)}
+	 * @return the MinHash signature of the set
+	 */
+	public int[] signature(String[] features) {
+		return signature(toFeatures(features));
+	}
+	private static long[] toFeatures(SparseVector vector) {
+		long[] features = new long[vector.size()];
+		for(int i=0;i<features.length;i++)
+			features[i] = vector.getId(i);
+		return features;
+	}
+	private static long[] toFeatures(String[] features) {
+		long[] hashes = new long[features.length];
+		for(int i=0;i<features.length;i++)
+			hashes[i] = hash(features[i]);
+		return hashes;
+	}
+	/**
+	 * Computes the signatures of many feature sets in parallel.
+	 * @param featureSets a list of string feature sets
+	 * @return the concatenated signatures, where the signature of the i-th set starts at position i*{@link #getNumberOfHashes()}
+	 */
+	public int[] signatures(List<String[]> featureSets) {
+		int[] signatures = new int[featureSets.size()*multipliers.length];
+		IntStream.range(0, featureSets.size()).parallel().forEach(i -> signature(toFeatures(featureSets.get(i)), signatures, i*multipliers.length));
+		return signatures;
+	}
+	/**
+	 * Computes the signatures of many vectors in parallel.
+	 * @param vectors a list of sparse vectors
+	 * @return the concatenated signatures, where the signature of the i-th vector starts at position i*{@link #getNumberOfHashes()}
+	 */
+	public int[] vectorSignatures(List<SparseVector> vectors) {
+		int[] signatures = new int[vectors.size()*multipliers.length];
+		IntStream.range(0, vectors.size()).parallel().forEach(i -> signature(toFeatures(vectors.get(i)), signatures, i*multipliers.length));
+		return signatures;
+	}
+	/**
+	 * @param signature1 a signature
+	 * @param signature2 a signature obtained by the same {@link MinHash}
+	 * @return the estimated Jaccard similarity between the respective sets
+	 */
+	public static double similarity(int[] signature1, int[] signature2) {
+		return similarity(signature1, 0, signature2, 0, signature1.length);
+	}
+	static double similarity(int[] signatures1, int offset1, int[] signatures2, int offset2, int length) {
+		int agreements = 0;
+		for(int i=0;i<length;i++)
+			if(signatures1[offset1+i]==signatures2[offset2+i])
+				agreements++;
+		return (double)agreements/length;
+	}
+}
@@ -0,0 +1,155 @@
+package auth.eng.textManager;
+
+import java.util.Arrays;
+
+/**
+ * Compacts the sparse feature vectors of any {@link WordModel} into dense <code>float[]</code> vectors of a fixed
+ * number of dimensions, whose dot products approximate the dot products of the original vectors. The projection of
+ * each feature id is derived from a hash of the id instead of a stored matrix, so that vectors are projected directly
+ * from their non-zero components and vocabularies can keep growing.
+ * <br>
+ * Two methods are supported: the sparse random projection of Achlioptas, whose entries are sqrt(3/dimensions)
+ * with probability 1/6, -sqrt(3/dimensions) with probability 1/6 and zero otherwise, and count-sketch, which adds each
+ * component with a random sign to a single hashed dimension. Both yield comparable estimates for text vectors, but
+ * count-sketch projects in constant time per component instead of time proportional to the dimensions.
+ * <br>
+ * Projections are only comparable for the same dimensions, method, seed and feature ids. Vectors should hence be
+ * projected after pruning or merging vocabularies.
+ * @author Emmanouil Krasanakis
+ */
+public class RandomProjection {
+	public enum Method {
+		/** Achlioptas sparse random projection */
+		SPARSE_PROJECTION,
+		/** Count-sketch, i.e. signed feature hashing */
+		COUNT_SKETCH
+	}
+
+	private final int dimensions;
+	private final Method method;
+	private final long seed;
+	private final float scale;
+
+	public RandomProjection(int dimensions) {
+		this(dimensions, Method.SPARSE_PROJECTION, 0);
+	}
+	/**
+	 * @param dimensions the number of dimensions of projected vectors
+	 * @param method the projection method
+	 * @param seed the seed of the projection (projections are only comparable for the same seed)
+	 */
+	public RandomProjection(int dimensions, Method method, long seed) {
+		if(dimensions<=0)
+			throw new IllegalArgumentException("The number of dimensions should be positive");
+		this.dimensions = dimensions;
+		this.method = method;
+		this.seed = seed;
+		this.scale = (float)Math.sqrt(3.0/dimensions);
+	}
+	/**
+	 * @return the number of dimensions of projected vectors
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+	public Method getMethod() {
+		return method;
+	}
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+	private void add(int id, double value, float[] projection) {
+		long state = mix(seed ^ (id*0x9e3779b97f4a7c15L));
+		if(method==Method.COUNT_SKETCH) {
+			int dimension = (int)(((state >>> 32)*dimensions) >>> 32);
+			projection[dimension] += (state & 1)==0?value:-value;
+			return;
+		}
+		float component = (float)(scale*value);
+		for(int dimension=0;dimension<dimensions;dimension+=2) {
+			long random = mix(state += 0x9e3779b97f4a7c15L);
+			int outcome = (int)(((random >>> 32)*6) >>> 32);//each 32-bit half of the random value picks one of six outcomes
+			if(outcome==0)
+				projection[dimension] += component;
+			else if(outcome==1)
+				projection[dimension] -= component;
+			if(dimension+1<dimensions) {
+				outcome = (int)(((random & 0xffffffffL)*6) >>> 32);
+				if(outcome==0)
+					projection[dimension+1] += component;
+				else if(outcome==1)
+					projection[dimension+1] -= component;
+			}
+		}
+	}
+	/**
+	 * @param vector a sparse feature vector
+	 * @return the projected vector
+	 */
+	public float[] project(SparseVector vector) {
+		return project(vector, new float[dimensions]);
+	}
+	/**
+	 * Projects a vector into a given array, which can be reused across vectors to avoid allocations.
+	 * @param vector a sparse feature vector
+	 * @param projection an array of the projection's dimensions, whose previous contents are overwritten
+	 * @return the given array
+	 */
+	public float[] project(SparseVector vector, float[] projection) {
+		if(projection.length!=dimensions)
+			throw new IllegalArgumentException("Projections should have "+dimensions+" dimensions");
+		Arrays.fill(projection, 0);
+		for(int i=0;i<vector.size();i++)
+			add(vector.getId(i), vector.getValue(i), projection);
+		return projection;
+	}
+	/**
+	 * @param vector a sparse feature vector, such as a row of a {@link VectorStore}
+	 * @return the projected vector
+	 */
+	public float[] project(SparseVectorView vector) {
+		float[] projection = new float[dimensions];
+		for(int i=0;i<vector.size();i++)
+			add(vector.getId(i), vector.getValue(i), projection);
+		return projection;
+	}
+	/**
+	 * @param vector1 a projected vector
+	 * @param vector2 a projected vector
+	 * @return the dot product between the vectors, which estimates the dot product of the original vectors
+	 */
+	public static double dot(float[] vector1, float[] vector2) {
+		if(vector1.length!=vector2.length)
+			throw new IllegalArgumentException("Projected vectors should have the same dimensions");
+		float sum0 = 0;
+		float sum1 = 0;
+		float sum2 = 0;
+		float sum3 = 0;
+		int i = 0;
+		for(;i+3<vector1.length;i+=4) {//independent sums let the compiler pipeline and vectorize the loop
+			sum0 += vector1[i]*vector2[i];
+			sum1 += vector1[i+1]*vector2[i+1];
+			sum2 += vector1[i+2]*vector2[i+2];
+			sum3 += vector1[i+3]*vector2[i+3];
+		}
+		for(;i<vector1.length;i++)
+			sum0 += vector1[i]*vector2[i];
+		return (double)sum0+sum1+sum2+sum3;
+	}
+	/**
+	 * @param vector1 a projected vector
+	 * @param vector2 a projected vector
+	 * @return the cosine similarity between the vectors (zero if either vector is zero)
+	 */
+	public static double similarity(float[] vector1, float[] vector2) {
+		double norms = Math.sqrt(dot(vector1, vector1)*dot(vector2, vector2));
+		if(norms==0)
+			return 0;
+		return dot(vector1, vector2)/norms;
+	}
+}
@@ -0,0 +1,375 @@
+package auth.eng.textManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Single-pass sentence segmenter, which splits text into sentences without splitting any of the common parenthesis
+ * or brackets (i.e. (), [], {}). Produces the same sentences as {@link WordModel#getTextSentences(String)} in linear
+ * time, reading text incrementally from a {@link CharSequence} or a {@link Reader}.
+ * <br>
+ * Text is split on new lines and on a dot followed by whitespace at the end of the text. Split fragments are then
+ * merged with spaces for as long as their opened brackets are not closed.
+ * <pre>
+ * SentenceSegmenter segmenter = new SentenceSegmenter(reader);
+ * while(segmenter.next())
+ *     process(segmenter.getSentence());
+ * </pre>
+ * Large texts can also be split in parallel through {@link #split(CharSequence, int)}.
+ * @author Emmanouil Krasanakis
+ */
+public class SentenceSegmenter {
+	private static final int END = -1;
+	private static final int MIN_PARALLEL_CHUNK = 1 << 16;
+	
+	// ------------- INPUT
+	private final CharSequence text;
+	private final Reader reader;
+	private int textPosition = 0;
+	private char[] buffer;
+	private int bufferPosition = 0;
+	private int bufferLength = 0;
+	private final StringBuilder lookahead = new StringBuilder();
+	private int lookaheadPosition = 0;
+	private final StringBuilder run = new StringBuilder();
+	private long position = 0;//offsets are long, since readers (e.g. a MappedTextReader) may exceed 2^31 characters
+	private boolean finished = false;
+	
+	// ------------- SEGMENTATION STATE
+	private int accumulation = 0;
+	private long pieceStart = 0;
+	private int pieceLength = 0;
+	private long pendingEmptyPieces = 0;
+	private long pendingStart = 0;
+	private final StringBuilder current = new StringBuilder();
+	private long sentenceStart = -1;
+	private long sentenceEnd = 0;
+	private final ArrayDeque<Sentence> ready = new ArrayDeque<Sentence>();
+	private Sentence sentence;
+	
+	private static class Sentence {
+		private final String text;
+		private final long start;
+		private final long end;
+		private Sentence(String text, long start, long end) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+		}
+	}
+	
+	/**
+	 * @param text the text to split into sentences
+	 */
+	public SentenceSegmenter(CharSequence text) {
+		this.text = text;
+		this.reader = null;
+	}
+	/**
+	 * Creates a segmenter that resumes splitting after a sentence boundary of a larger text, at which the given
+	 * brackets are still open (or excess brackets have been closed, if negative).
+	 * @param text the rest of the text, which should extend to the end of the larger text
+	 * @param initialAccumulation the net number of opened brackets before the text
+	 */
+	public SentenceSegmenter(CharSequence text, int initialAccumulation) {
+		this(text);
+		accumulation = initialAccumulation;
+	}
+	/**
+	 * @param reader a reader that provides the text to split into sentences (it is not closed by the segmenter)
+	 */
+	public SentenceSegmenter(Reader reader) {
+		this.text = null;
+		this.reader = reader;
+		this.buffer = new char[8192];
+	}
+	/**
+	 * Advances to the next sentence. Only as much text as needed to find the end of that sentence is read.
+	 * @return false if there are no more sentences
+	 * @throws UncheckedIOException if the reader of the segmenter fails
+	 */
+	public boolean next() {
+		while(ready.isEmpty() && !finished)
+			step();
+		sentence = ready.poll();
+		return sentence!=null;
+	}
+	/**
+	 * @return the current sentence, in which the separators between merged fragments are replaced by spaces
+	 */
+	public String getSentence() {
+		return sentence.text;
+	}
+	/**
+	 * @return the character offset in the text at which the current sentence starts
+	 */
+	public long getStart() {
+		return sentence.start;
+	}
+	/**
+	 * @return the character offset in the text at which the current sentence ends (exclusive)
+	 */
+	public long getEnd() {
+		return sentence.end;
+	}
+	
+	private int read() {
+		if(lookaheadPosition<lookahead.length())
+			return lookahead.charAt(lookaheadPosition++);
+		if(text!=null)
+			return textPosition<text.length()?text.charAt(textPosition++):END;
+		if(bufferPosition==bufferLength) {
+			try {
+				do {
+					bufferLength = reader.read(buffer);
+				}
+				while(bufferLength==0);
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			bufferPosition = 0;
+			if(bufferLength<0) {
+				bufferLength = 0;
+				return END;
+			}
+		}
+		return buffer[bufferPosition++];
+	}
+	private void unread(CharSequence chars) {
+		if(chars.length()==0)
+			return;
+		lookahead.delete(0, lookaheadPosition);
+		lookahead.insert(0, chars);
+		lookaheadPosition = 0;
+	}
+	private static boolean isSpace(int c) {
+		return c==' ' || c=='\t' || c=='\n' || c=='\u000B' || c=='\f' || c=='\r';
+	}
+	private static boolean isLineTerminator(int c) {
+		return c=='\u0085' || c=='\u2028' || c=='\u2029';
+	}
+	private void step() {
+		int c = read();
+		if(c==END) {
+			finish();
+			return;
+		}
+		long offset = position++;
+		if(c=='\n') {
+			endPiece(offset);
+			pieceStart = position;
+			return;
+		}
+		if(c=='.') {
+			run.setLength(0);
+			int next;
+			while(isSpace(next = read()))
+				run.append((char)next);
+			if(run.length()!=0) {
+				if(next==END) {
+					position += run.length();
+					endPiece(offset);
+					pieceStart = position;
+					return;
+				}
+				if(isLineTerminator(next)) {
+					int afterNext = read();
+					if(afterNext==END) {
+						position += run.length();
+						endPiece(offset);
+						pieceStart = position;
+						unread(String.valueOf((char)next));
+						return;
+					}
+					run.append((char)next);
+					next = afterNext;
+				}
+			}
+			if(next!=END)
+				run.append((char)next);
+			unread(run);
+		}
+		append((char)c);
+	}
+	private void append(char c) {
+		if(pieceLength==0) {
+			flushEmptyPieces();
+			if(sentenceStart<0)
+				sentenceStart = pieceStart;
+		}
+		current.append(c);
+		pieceLength++;
+		if(c=='(' || c=='{' || c=='[')
+			accumulation++;
+		else if(c==')' || c=='}' || c==']')
+			accumulation--;
+	}
+	private void endPiece(long end) {
+		if(pieceLength==0) {
+			if(pendingEmptyPieces==0)
+				pendingStart = pieceStart;
+			pendingEmptyPieces++;
+			return;
+		}
+		pieceLength = 0;
+		sentenceEnd = end;
+		if(accumulation>0)
+			current.append(' ');
+		else
+			emit();
+	}
+	private void flushEmptyPieces() {
+		for(long i=0;i<pendingEmptyPieces;i++) {
+			long start = pendingStart+i;//consecutive empty fragments are separated by single new lines
+			if(sentenceStart<0)
+				sentenceStart = start;
+			sentenceEnd = start;
+			if(accumulation>0)
+				current.append(' ');
+			else
+				emit();
+		}
+		pendingEmptyPieces = 0;
+	}
+	private void emit() {
+		ready.add(new Sentence(current.toString(), sentenceStart, sentenceEnd));
+		current.setLength(0);
+		sentenceStart = -1;
+	}
+	private void finish() {
+		finished = true;
+		if(position==0) {
+			ready.add(new Sentence("", 0, 0));
+			return;
+		}
+		if(pieceLength!=0)
+			endPiece(position);
+		if(current.length()!=0)
+			emit();
+	}
+	
+	/**
+	 * Splits a text into the same sentences as a segmenter would, but scans chunks of the text in parallel.
+	 * Each chunk finds its fragment boundaries and the net bracket depth at each boundary independently. A prefix sum
+	 * over chunk depths then yields the global depth at every boundary, which determines where sentences end.
+	 * @param text the text to split into sentences
+	 * @param parallelism the number of chunks to scan in parallel (texts too small to benefit are split sequentially)
+	 * @return the sentences of the text
+	 */
+	public static String[] split(CharSequence text, int parallelism) {
+		int length = text.length();
+		int chunks = Math.min(parallelism, length/MIN_PARALLEL_CHUNK);
+		if(chunks<=1) {
+			ArrayList<String> sentences = new ArrayList<String>();
+			SentenceSegmenter segmenter = new SentenceSegmenter(text);
+			while(segmenter.next())
+				sentences.add(segmenter.getSentence());
+			return sentences.toArray(new String[sentences.size()]);
+		}
+		// a dot only splits if it is followed by whitespace up to the end of the text (or a final line terminator)
+		int bodyEnd = length;
+		int trailingStart = length;
+		int runStart = length;
+		if(runStart>0 && isLineTerminator(text.charAt(runStart-1)))
+			runStart--;
+		int runEnd = runStart;
+		while(runStart>0 && isSpace(text.charAt(runStart-1)))
+			runStart--;
+		if(runStart<runEnd && runStart>0 && text.charAt(runStart-1)=='.') {
+			bodyEnd = runStart-1;
+			trailingStart = runEnd;
+		}
+		final int scanEnd = bodyEnd;
+		final int chunkLength = (scanEnd+chunks-1)/chunks;
+		final int[][] chunkBoundaries = new int[chunks][];
+		final int[][] chunkDepths = new int[chunks][];
+		final int[] chunkDepth = new int[chunks];
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int from = Math.min(scanEnd, chunk*chunkLength);
+			int to = Math.min(scanEnd, from+chunkLength);
+			int[] boundaries = new int[16];
+			int[] depths = new int[16];
+			int count = 0;
+			int depth = 0;
+			for(int i=from;i<to;i++) {
+				char c = text.charAt(i);
+				if(c=='\n') {
+					if(count==boundaries.length) {
+						boundaries = Arrays.copyOf(boundaries, count*2);
+						depths = Arrays.copyOf(depths, count*2);
+					}
+					boundaries[count] = i;
+					depths[count++] = depth;
+				}
+				else if(c=='(' || c=='{' || c=='[')
+					depth++;
+				else if(c==')' || c=='}' || c==']')
+					depth--;
+			}
+			chunkBoundaries[chunk] = Arrays.copyOf(boundaries, count);
+			chunkDepths[chunk] = Arrays.copyOf(depths, count);
+			chunkDepth[chunk] = depth;
+		});
+		// fragments are delimited by the found new lines and the text's end, with their global bracket depth
+		int fragments = 1+(bodyEnd<length?1:0);
+		for(int[] boundaries : chunkBoundaries)
+			fragments += boundaries.length;
+		int[] fragmentStart = new int[fragments];
+		int[] fragmentEnd = new int[fragments];
+		int[] fragmentDepth = new int[fragments];
+		int fragment = 0;
+		int offset = 0;
+		int start = 0;
+		for(int chunk=0;chunk<chunks;chunk++) {
+			for(int i=0;i<chunkBoundaries[chunk].length;i++) {
+				fragmentStart[fragment] = start;
+				fragmentEnd[fragment] = chunkBoundaries[chunk][i];
+				fragmentDepth[fragment++] = offset+chunkDepths[chunk][i];
+				start = chunkBoundaries[chunk][i]+1;
+			}
+			offset += chunkDepth[chunk];
+		}
+		fragmentStart[fragment] = start;
+		fragmentEnd[fragment] = bodyEnd;
+		fragmentDepth[fragment++] = offset;
+		if(bodyEnd<length) {
+			fragmentStart[fragment] = trailingStart;
+			fragmentEnd[fragment] = length;
+			fragmentDepth[fragment++] = offset;
+		}
+		while(fragments>0 && fragmentStart[fragments-1]==fragmentEnd[fragments-1])
+			fragments--;//trailing empty fragments are ignored
+		// sentences span consecutive fragments until the bracket depth closes
+		int[] sentenceFirst = new int[fragments];
+		int[] sentenceLast = new int[fragments];
+		int sentences = 0;
+		int first = 0;
+		for(int i=0;i<fragments;i++)
+			if(fragmentDepth[i]<=0) {
+				sentenceFirst[sentences] = first;
+				sentenceLast[sentences++] = i;
+				first = i+1;
+			}
+		if(first<fragments) {
+			sentenceFirst[sentences] = first;
+			sentenceLast[sentences++] = fragments-1;
+		}
+		String[] ret = new String[sentences];
+		IntStream.range(0, sentences).parallel().forEach(sentence -> {
+			StringBuilder builder = new StringBuilder();
+			for(int i=sentenceFirst[sentence];i<=sentenceLast[sentence];i++) {
+				builder.append(text, fragmentStart[i], fragmentEnd[i]);
+				if(fragmentDepth[i]>0)
+					builder.append(' ');
+			}
+			ret[sentence] = builder.toString();
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,296 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import auth.eng.textManager.util.LongIntHashMap;
+
+/**
+ * Embeddable service that retrieves the most similar rows of a {@link VectorStore} corpus to submitted sentences.
+ * Concurrent requests are collected into batches that wait at most a given latency budget. Each batch is vectorized
+ * by the {@link WordModel} and scored by cosine similarity in a single pass over the corpus, so that the cost of
+ * reading the corpus is shared by the whole batch.
+ * <br>
+ * Requests are queued in a bounded queue; when the queue is full, submissions fail immediately with a
+ * {@link RejectedExecutionException} instead of growing the backlog.
+ * <br>
+ * Queries are vectorized through {@link WordModel#getSentenceKnownFeatureVector(String)}, so that they neither add
+ * features to the model's {@link Vocabulary} nor count in its statistics or trigger its pruning, which would
+ * renumber the features of corpus rows. The dispatcher thread vectorizes queries while synchronized on the model,
+ * so other threads that keep growing the corpus should also vectorize its rows while synchronized on the model:
+ * <pre>
+ * synchronized(model) {
+ *     vector = model.getSentenceSparseFeatureVector(sentence);
+ * }
+ * corpus.append(vector);
+ * </pre>
+ * @author Emmanouil Krasanakis
+ */
+public class SimilarityService implements AutoCloseable {
+	private final WordModel model;
+	private final VectorStore corpus;
+	private final int k;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final ArrayBlockingQueue<Request> queue;
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+	private double[] norms = new double[0];
+	
+	/**
+	 * A corpus row and its similarity to a query.
+	 */
+	public static class Match {
+		private final int row;
+		private final double similarity;
+		private Match(int row, double similarity) {
+			this.row = row;
+			this.similarity = similarity;
+		}
+		/**
+		 * @return the row of the match in the corpus
+		 */
+		public int getRow() {
+			return row;
+		}
+		public double getSimilarity() {
+			return similarity;
+		}
+		@Override
+		public String toString() {
+			return row+": "+similarity;
+		}
+	}
+	
+	private static class Request {
+		private final String sentence;
+		private final CompletableFuture<List<Match>> result = new CompletableFuture<List<Match>>();
+		Request(String sentence) {
+			this.sentence = sentence;
+		}
+	}
+	
+	/**
+	 * Creates a service with batches of up to 32 requests, a latency budget of 2 milliseconds and a queue of
+	 * 1024 requests.
+	 * @param model the model that vectorizes requests (and the corpus)
+	 * @param corpus the vectors of the corpus, which may keep growing while the service runs
+	 * @param k the maximum number of matches returned for each request
+	 */
+	public SimilarityService(WordModel model, VectorStore corpus, int k) {
+		this(model, corpus, k, 32, 2, TimeUnit.MILLISECONDS, 1024);
+	}
+	/**
+	 * @param model the model that vectorizes requests (and the corpus)
+	 * @param corpus the vectors of the corpus, which may keep growing while the service runs
+	 * @param k the maximum number of matches returned for each request
+	 * @param maxBatchSize the maximum number of requests scored together
+	 * @param maxDelay the longest time that the first request of a batch waits for more requests
+	 * @param unit the unit of the delay
+	 * @param queueCapacity the maximum number of pending requests
+	 */
+	public SimilarityService(WordModel model, VectorStore corpus, int k, int maxBatchSize, long maxDelay, TimeUnit unit, int queueCapacity) {
+		if(k<=0 || maxBatchSize<=0 || maxDelay<0 || queueCapacity<=0)
+			throw new IllegalArgumentException("Invalid similarity service parameters");
+		this.model = model;
+		this.corpus = corpus;
+		this.k = k;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		queue = new ArrayBlockingQueue<Request>(queueCapacity);
+		dispatcher = new Thread(this::dispatch, "SimilarityService");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+	/**
+	 * @param sentence a sentence
+	 * @return a future of the at most k most similar corpus rows, in descending similarity order
+	 * @throws RejectedExecutionException if the queue is full or the service has been closed
+	 */
+	public CompletableFuture<List<Match>> submit(String sentence) {
+		if(!running)
+			throw new RejectedExecutionException("The similarity service has been closed");
+		Request request = new Request(sentence);
+		if(!queue.offer(request))
+			throw new RejectedExecutionException("The similarity service queue is full");
+		if(!running && queue.remove(request))//the service closed after the check and may have already drained the queue
+			request.result.completeExceptionally(new CancellationException("The similarity service has been closed"));
+		return request.result;
+	}
+	/**
+	 * @return the number of requests waiting to be batched
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+	private void dispatch() {
+		ArrayList<Request> batch = new ArrayList<Request>(maxBatchSize);
+		try {
+			while(running) {
+				try {
+					batch.add(queue.take());
+					long deadline = System.nanoTime()+maxDelayNanos;
+					while(batch.size()<maxBatchSize) {
+						Request request = queue.poll(deadline-System.nanoTime(), TimeUnit.NANOSECONDS);
+						if(request==null)
+							break;
+						batch.add(request);
+					}
+				}
+				catch(InterruptedException e) {
+					if(!running)
+						break;
+				}
+				if(batch.isEmpty())
+					continue;
+				try {
+					List<List<Match>> results = score(batch);
+					for(int i=0;i<batch.size();i++)
+						batch.get(i).result.complete(results.get(i));
+				}
+				catch(Throwable e) {//errors (e.g. out of memory) fail the batch instead of stopping the dispatcher
+					for(Request request : batch)
+						request.result.completeExceptionally(e);
+				}
+				batch.clear();
+			}
+		}
+		finally {
+			running = false;//rejects further submissions if the dispatcher stops unexpectedly
+			for(Request request : batch)
+				request.result.completeExceptionally(new CancellationException("The similarity service has been closed"));
+			Request request;
+			while((request = queue.poll())!=null)
+				request.result.completeExceptionally(new CancellationException("The similarity service has been closed"));
+		}
+	}
+	/**
+	 * Scores a batch against the corpus by grouping the batch's components by feature id, so that each corpus
+	 * component updates the dot products of all the queries that contain its feature.
+	 */
+	private List<List<Match>> score(ArrayList<Request> batch) {
+		int queries = batch.size();
+		SparseVector[] vectors = new SparseVector[queries];
+		int entries = 0;
+		synchronized(model) {
+			for(int q=0;q<queries;q++) {
+				vectors[q] = model.getSentenceKnownFeatureVector(batch.get(q).sentence);
+				entries += vectors[q].size();
+			}
+		}
+		int[] entryQuery = new int[entries];
+		double[] entryWeight = new double[entries];
+		long[] order = new long[entries];
+		entries = 0;
+		for(int q=0;q<queries;q++) {
+			double norm = vectors[q].norm();
+			for(int i=0;i<vectors[q].size();i++) {
+				entryQuery[entries] = q;
+				entryWeight[entries] = vectors[q].getValue(i)/norm;
+				order[entries] = ((long)vectors[q].getId(i) << 32) | entries;
+				entries++;
+			}
+		}
+		Arrays.sort(order);
+		LongIntHashMap groupStart = new LongIntHashMap(entries);
+		int[] groupQuery = new int[entries];
+		double[] groupWeight = new double[entries];
+		int[] groupEnd = new int[entries];
+		for(int i=0;i<entries;i++) {
+			int entry = (int)order[i];
+			groupQuery[i] = entryQuery[entry];
+			groupWeight[i] = entryWeight[entry];
+			if(i==0 || (order[i-1] >>> 32)!=(order[i] >>> 32))
+				groupStart.put(order[i] >>> 32, i);
+		}
+		for(int i=entries-1;i>=0;i--)
+			groupEnd[i] = i==entries-1 || (order[i+1] >>> 32)!=(order[i] >>> 32)?i+1:groupEnd[i+1];
+		
+		int rows = corpus.size();
+		if(norms.length<rows) {
+			int from = norms.length;
+			norms = Arrays.copyOf(norms, rows);
+			for(int row=from;row<rows;row++)
+				norms[row] = corpus.getRow(row).norm();
+		}
+		double[] dots = new double[queries];
+		int[][] topRows = new int[queries][k];
+		double[][] topScores = new double[queries][k];
+		int[] topCounts = new int[queries];
+		for(int row=0;row<rows;row++) {
+			if(norms[row]==0)
+				continue;
+			SparseVectorView vector = corpus.getRow(row);
+			for(int i=0;i<vector.size();i++) {
+				int start = groupStart.get(vector.getId(i));
+				if(start==-1)
+					continue;
+				double value = vector.getValue(i);
+				for(int j=start;j<groupEnd[start];j++)
+					dots[groupQuery[j]] += groupWeight[j]*value;
+			}
+			for(int q=0;q<queries;q++)
+				if(dots[q]!=0) {
+					offer(topRows[q], topScores[q], topCounts, q, row, dots[q]/norms[row]);
+					dots[q] = 0;
+				}
+		}
+		List<List<Match>> results = new ArrayList<List<Match>>(queries);
+		for(int q=0;q<queries;q++) {
+			Integer[] positions = new Integer[topCounts[q]];
+			for(int i=0;i<positions.length;i++)
+				positions[i] = i;
+			double[] scores = topScores[q];
+			int[] rowIds = topRows[q];
+			Arrays.sort(positions, (a, b) -> scores[a]!=scores[b]?Double.compare(scores[b], scores[a]):Integer.compare(rowIds[a], rowIds[b]));
+			ArrayList<Match> matches = new ArrayList<Match>(positions.length);
+			for(int position : positions)
+				matches.add(new Match(rowIds[position], scores[position]));
+			results.add(matches);
+		}
+		return results;
+	}
+	/**
+	 * Keeps the k highest scores in an array, replacing the lowest one when full.
+	 */
+	private void offer(int[] rows, double[] scores, int[] counts, int query, int row, double score) {
+		int count = counts[query];
+		if(count<k) {
+			rows[count] = row;
+			scores[count] = score;
+			counts[query] = count+1;
+			return;
+		}
+		int lowest = 0;
+		for(int i=1;i<k;i++)
+			if(scores[i]<scores[lowest])
+				lowest = i;
+		if(score>scores[lowest]) {
+			rows[lowest] = row;
+			scores[lowest] = score;
+		}
+	}
+	/**
+	 * Stops the service; pending requests complete exceptionally with a {@link CancellationException}.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		dispatcher.interrupt();
+		try {
+			dispatcher.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Request request;
+		while((request = queue.poll())!=null)
+			request.result.completeExceptionally(new CancellationException("The similarity service has been closed"));
+	}
+}
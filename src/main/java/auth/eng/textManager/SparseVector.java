@@ -0,0 +1,173 @@
+package auth.eng.textManager;
+
+import java.util.Arrays;
+
+/**
+ * Sparse feature vector, which stores only the non-zero components of vectors produced by a {@link WordModel}.
+ * Component ids are stored in ascending order.
+ * @author Emmanouil Krasanakis
+ */
+public class SparseVector {
+	private final int[] ids;
+	private final double[] values;
+	
+	/**
+	 * @param ids component ids in strictly ascending order
+	 * @param values the values of the respective components
+	 */
+	public SparseVector(int[] ids, double[] values) {
+		if(ids.length!=values.length)
+			throw new IllegalArgumentException("Ids and values should have the same length");
+		this.ids = ids;
+		this.values = values;
+	}
+	/**
+	 * Creates a vector from (possibly repeated) feature ids. Repeated features keep their largest weight,
+	 * so that unit weights yield the same binary vectors as {@link WordModel#getSentenceFeatureVector(String)}.
+	 * @param featureIds feature ids in any order
+	 * @param weights the weight of each feature id (<code>null</code> for unit weights)
+	 * @return the created vector
+	 */
+	public static SparseVector fromFeatureIds(int[] featureIds, double[] weights) {
+		return fromFeatures(featureIds, weights, false);
+	}
+	/**
+	 * Creates a vector from (possibly repeated) feature ids, in which the weights of repeated features are summed.
+	 * For unit weights, this yields the term frequency of each feature.
+	 * @param featureIds feature ids in any order
+	 * @param weights the weight of each feature id (<code>null</code> for unit weights)
+	 * @return the created vector
+	 */
+	public static SparseVector fromFeatureCounts(int[] featureIds, double[] weights) {
+		return fromFeatures(featureIds, weights, true);
+	}
+	private static SparseVector fromFeatures(int[] featureIds, double[] weights, boolean sumRepeated) {
+		if(weights==null) {
+			int[] sorted = featureIds.clone();
+			Arrays.sort(sorted);
+			int[] ids = new int[sorted.length];
+			double[] values = new double[sorted.length];
+			int size = 0;
+			for(int i=0;i<sorted.length;i++) {
+				if(size!=0 && ids[size-1]==sorted[i]) {
+					if(sumRepeated)
+						values[size-1]++;
+				}
+				else {
+					ids[size] = sorted[i];
+					values[size++] = 1;
+				}
+			}
+			return new SparseVector(Arrays.copyOf(ids, size), Arrays.copyOf(values, size));
+		}
+		long[] order = new long[featureIds.length];
+		for(int i=0;i<featureIds.length;i++)
+			order[i] = ((long)featureIds[i] << 32) | i;
+		Arrays.sort(order);
+		int[] ids = new int[order.length];
+		double[] values = new double[order.length];
+		int size = 0;
+		for(long entry : order) {
+			int id = (int)(entry >>> 32);
+			double weight = weights[(int)entry];
+			if(size!=0 && ids[size-1]==id)
+				values[size-1] = sumRepeated?values[size-1]+weight:Math.max(values[size-1], weight);
+			else {
+				ids[size] = id;
+				values[size++] = weight;
+			}
+		}
+		return new SparseVector(Arrays.copyOf(ids, size), Arrays.copyOf(values, size));
+	}
+	/**
+	 * @return the sum of the vector's values (e.g. the length of a document for term frequency vectors)
+	 */
+	public double sum() {
+		double ret = 0;
+		for(double value : values)
+			ret += value;
+		return ret;
+	}
+	/**
+	 * @param remap a table from previous to new ids (-1 for removed components)
+	 * @return the vector in the new ids
+	 * @see Vocabulary#prune(int, int, double)
+	 * @see Vocabulary#merge(Vocabulary...)
+	 */
+	public SparseVector remap(int[] remap) {
+		int[] newIds = new int[ids.length];
+		double[] newValues = new double[ids.length];
+		int size = 0;
+		boolean ordered = true;
+		for(int i=0;i<ids.length;i++)
+			if(ids[i]<remap.length && remap[ids[i]]!=-1) {
+				newIds[size] = remap[ids[i]];
+				newValues[size] = values[i];
+				if(size!=0 && newIds[size]<newIds[size-1])
+					ordered = false;
+				size++;
+			}
+		if(!ordered)
+			return fromFeatureIds(Arrays.copyOf(newIds, size), Arrays.copyOf(newValues, size));//remaps that reorder ids, such as merges, require sorting
+		return new SparseVector(Arrays.copyOf(newIds, size), Arrays.copyOf(newValues, size));
+	}
+	/**
+	 * @return the number of non-zero components
+	 */
+	public int size() {
+		return ids.length;
+	}
+	public int getId(int position) {
+		return ids[position];
+	}
+	public double getValue(int position) {
+		return values[position];
+	}
+	/**
+	 * @param vector a given sparse vector
+	 * @return the dot product between this and the given vector
+	 */
+	public double dot(SparseVector vector) {
+		double ret = 0;
+		int i = 0;
+		int j = 0;
+		while(i<ids.length && j<vector.ids.length) {
+			if(ids[i]==vector.ids[j])
+				ret += values[i++]*vector.values[j++];
+			else if(ids[i]<vector.ids[j])
+				i++;
+			else
+				j++;
+		}
+		return ret;
+	}
+	/**
+	 * @return the Euclidean norm of the vector
+	 */
+	public double norm() {
+		double ret = 0;
+		for(double value : values)
+			ret += value*value;
+		return Math.sqrt(ret);
+	}
+	/**
+	 * @param vector a given sparse vector
+	 * @return the cosine similarity between this and the given vector (zero if either vector is zero)
+	 */
+	public double similarity(SparseVector vector) {
+		double norms = norm()*vector.norm();
+		if(norms==0)
+			return 0;
+		return dot(vector)/norms;
+	}
+	/**
+	 * @param length the length of the dense vector (must exceed all component ids)
+	 * @return a dense representation of the vector
+	 */
+	public double[] toDense(int length) {
+		double[] vector = new double[length];
+		for(int i=0;i<ids.length;i++)
+			vector[ids[i]] = values[i];
+		return vector;
+	}
+}
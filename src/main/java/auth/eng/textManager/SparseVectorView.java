@@ -0,0 +1,125 @@
+package auth.eng.textManager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of a sparse vector whose ids and values reside in a {@link ByteBuffer}, such as a row of a
+ * {@link VectorStore} or of a memory-mapped vector file. Views do not copy the underlying data, so that similarities
+ * can be computed without bringing vectors onto the heap.
+ * <br>
+ * Ids are stored as consecutive <code>int</code>s in ascending order and values as consecutive <code>double</code>s.
+ * @author Emmanouil Krasanakis
+ */
+public class SparseVectorView {
+	private final ByteBuffer buffer;
+	private final int idsPosition;
+	private final int valuesPosition;
+	private final int size;
+	
+	/**
+	 * @param buffer the buffer holding the vector
+	 * @param idsPosition the byte position of the first id
+	 * @param valuesPosition the byte position of the first value
+	 * @param size the number of non-zero components
+	 */
+	public SparseVectorView(ByteBuffer buffer, int idsPosition, int valuesPosition, int size) {
+		this.buffer = buffer;
+		this.idsPosition = idsPosition;
+		this.valuesPosition = valuesPosition;
+		this.size = size;
+	}
+	/**
+	 * @return the number of non-zero components
+	 */
+	public int size() {
+		return size;
+	}
+	public int getId(int position) {
+		return buffer.getInt(idsPosition+4*position);
+	}
+	public double getValue(int position) {
+		return buffer.getDouble(valuesPosition+8*position);
+	}
+	/**
+	 * @param vector a given sparse vector
+	 * @return the dot product between this and the given vector
+	 */
+	public double dot(SparseVector vector) {
+		double ret = 0;
+		int i = 0;
+		int j = 0;
+		while(i<size && j<vector.size()) {
+			int id = getId(i);
+			if(id==vector.getId(j))
+				ret += getValue(i++)*vector.getValue(j++);
+			else if(id<vector.getId(j))
+				i++;
+			else
+				j++;
+		}
+		return ret;
+	}
+	/**
+	 * @param vector a given view
+	 * @return the dot product between this and the given view
+	 */
+	public double dot(SparseVectorView vector) {
+		double ret = 0;
+		int i = 0;
+		int j = 0;
+		while(i<size && j<vector.size) {
+			int id = getId(i);
+			int otherId = vector.getId(j);
+			if(id==otherId)
+				ret += getValue(i++)*vector.getValue(j++);
+			else if(id<otherId)
+				i++;
+			else
+				j++;
+		}
+		return ret;
+	}
+	/**
+	 * @return the Euclidean norm of the vector
+	 */
+	public double norm() {
+		double ret = 0;
+		for(int i=0;i<size;i++) {
+			double value = getValue(i);
+			ret += value*value;
+		}
+		return Math.sqrt(ret);
+	}
+	/**
+	 * @param vector a given sparse vector
+	 * @return the cosine similarity between this and the given vector (zero if either vector is zero)
+	 */
+	public double similarity(SparseVector vector) {
+		double norms = norm()*vector.norm();
+		if(norms==0)
+			return 0;
+		return dot(vector)/norms;
+	}
+	/**
+	 * @param vector a given view
+	 * @return the cosine similarity between this and the given view (zero if either vector is zero)
+	 */
+	public double similarity(SparseVectorView vector) {
+		double norms = norm()*vector.norm();
+		if(norms==0)
+			return 0;
+		return dot(vector)/norms;
+	}
+	/**
+	 * @return a heap copy of the vector
+	 */
+	public SparseVector toSparseVector() {
+		int[] ids = new int[size];
+		double[] values = new double[size];
+		for(int i=0;i<size;i++) {
+			ids[i] = getId(i);
+			values[i] = getValue(i);
+		}
+		return new SparseVector(ids, values);
+	}
+}
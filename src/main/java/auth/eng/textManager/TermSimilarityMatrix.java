@@ -0,0 +1,188 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Sparse symmetric matrix of similarities between the features of a {@link Vocabulary}, which is computed once from
+ * the WordNet relations used by {@link WordModel.BagOfWordNet}. Two features are related if the stemmed synonyms
+ * and hypernyms that {@link WordModel.BagOfWordNet#getRelatedStems(String)} finds for them overlap, or if either
+ * is among the other's related stems. This allows comparing the small vectors of {@link WordModel.BagOfWords}
+ * through soft cosine similarity, without any WordNet access at query time.
+ * <pre>
+ * WordModel wordModel = new WordModel.BagOfWords(stemmer);
+ * ... vectorize a corpus ...
+ * TermSimilarityMatrix matrix = new TermSimilarityMatrix(new WordModel.BagOfWordNet(stemmer), wordModel.getVocabulary());
+ * double similarity = matrix.similarity(wordModel.getSentenceTermFrequencyVector(sentence1), wordModel.getSentenceTermFrequencyVector(sentence2));
+ * </pre>
+ * Each feature is related to at most a given number of others, which bounds the cost of features that share common
+ * stems. The similarity of two related features is reduced to the inverse of the larger number of features that
+ * either is related to, so that the matrix is diagonally dominant and hence positive semidefinite, which keeps soft
+ * cosine similarity within [-1, 1].
+ * <br>
+ * The matrix covers the ids of the vocabulary at the time of its construction. Features added afterwards are only
+ * similar to themselves and the matrix should be recomputed after pruning the vocabulary.
+ * @author Emmanouil Krasanakis
+ */
+public class TermSimilarityMatrix {
+	private final int terms;
+	private final int[] rowOffsets;
+	private final int[] columns;
+	private final double[] values;
+
+	public TermSimilarityMatrix(WordModel.BagOfWordNet wordNet, Vocabulary vocabulary) {
+		this(wordNet, vocabulary, 0.5, 100);
+	}
+	/**
+	 * Looks up all string features of a vocabulary in WordNet to find related features. The lookup is performed on
+	 * the features themselves, which should hence be words or light stems (e.g. of a {@link auth.eng.textManager.stemmers.NoStemmer}).
+	 * @param wordNet the word model whose WordNet expansion determines related features
+	 * @param vocabulary the vocabulary whose features the matrix relates
+	 * @param relatedSimilarity the maximum similarity between distinct related features, in the range (0, 1]
+	 * @param maxNeighbors the maximum number of features that each feature is related to
+	 */
+	public TermSimilarityMatrix(WordModel.BagOfWordNet wordNet, Vocabulary vocabulary, double relatedSimilarity, int maxNeighbors) {
+		if(relatedSimilarity<=0 || relatedSimilarity>1)
+			throw new IllegalArgumentException("Related feature similarity should lie in the range (0, 1]");
+		if(maxNeighbors<0)
+			throw new IllegalArgumentException("The maximum number of related features should be non-negative");
+		terms = vocabulary.size();
+		// features are indexed by each stem of their expansion, including their own
+		HashMap<String, ArrayList<Integer>> expanded = new HashMap<String, ArrayList<Integer>>();
+		for(int id=0;id<terms;id++) {
+			String text = vocabulary.getText(id);
+			if(text==null)
+				continue;
+			LinkedHashSet<String> expansion = new LinkedHashSet<String>();
+			expansion.add(text);
+			for(String stem : wordNet.getRelatedStems(text))
+				expansion.add(stem);
+			for(String stem : expansion) {
+				ArrayList<Integer> ids = expanded.get(stem);
+				if(ids==null)
+					expanded.put(stem, ids = new ArrayList<Integer>());
+				ids.add(id);
+			}
+		}
+		// features indexed by the same stem are related, each to the next ones up to the maximum number of neighbors
+		long[] pairs = new long[16];
+		int pairCount = 0;
+		int[] neighbors = new int[terms];//upper bound of related features, since pairs may repeat across stems
+		for(ArrayList<Integer> ids : expanded.values())
+			for(int i=0;i<ids.size();i++) {
+				int id1 = ids.get(i);
+				for(int j=i+1;j<ids.size() && j<=i+maxNeighbors && neighbors[id1]<maxNeighbors;j++) {
+					int id2 = ids.get(j);
+					if(neighbors[id2]>=maxNeighbors)
+						continue;
+					neighbors[id1]++;
+					neighbors[id2]++;
+					if(pairCount+2>pairs.length)
+						pairs = Arrays.copyOf(pairs, pairs.length*2);
+					pairs[pairCount++] = ((long)id1 << 32) | id2;
+					pairs[pairCount++] = ((long)id2 << 32) | id1;
+				}
+			}
+		Arrays.sort(pairs, 0, pairCount);
+		rowOffsets = new int[terms+1];
+		int[] related = new int[pairCount];
+		int size = 0;
+		for(int i=0;i<pairCount;i++)
+			if(i==0 || pairs[i]!=pairs[i-1]) {
+				rowOffsets[(int)(pairs[i] >>> 32)+1]++;
+				related[size++] = (int)pairs[i];
+			}
+		columns = Arrays.copyOf(related, size);
+		for(int row=0;row<terms;row++)
+			rowOffsets[row+1] += rowOffsets[row];
+		values = new double[size];
+		for(int row=0;row<terms;row++)
+			for(int position=rowOffsets[row];position<rowOffsets[row+1];position++) {
+				int column = columns[position];
+				int maxRelated = Math.max(rowOffsets[row+1]-rowOffsets[row], rowOffsets[column+1]-rowOffsets[column]);
+				values[position] = Math.min(relatedSimilarity, 1.0/maxRelated);//rows sum to at most one besides the diagonal
+			}
+	}
+	/**
+	 * @return the number of features covered by the matrix
+	 */
+	public int getTermCount() {
+		return terms;
+	}
+	/**
+	 * @return the number of pairs of distinct related features (each pair is counted in both orders)
+	 */
+	public int getEntryCount() {
+		return values.length;
+	}
+	/**
+	 * @param id1 a feature id
+	 * @param id2 a feature id
+	 * @return the similarity between the two features (one if they are the same)
+	 */
+	public double getSimilarity(int id1, int id2) {
+		if(id1==id2)
+			return 1;
+		if(id1>=terms || id2>=terms)
+			return 0;
+		int position = Arrays.binarySearch(columns, rowOffsets[id1], rowOffsets[id1+1], id2);
+		return position<0?0:values[position];
+	}
+	/**
+	 * Multiplies the matrix with a vector. Precomputing this product for one side of many comparisons avoids
+	 * repeating it in {@link #similarity(SparseVector, SparseVector)}.
+	 * @param vector a feature vector
+	 * @return the product between the matrix and the given vector
+	 */
+	public SparseVector multiply(SparseVector vector) {
+		int size = vector.size();
+		for(int i=0;i<vector.size();i++) {
+			int id = vector.getId(i);
+			if(id<terms)
+				size += rowOffsets[id+1]-rowOffsets[id];
+		}
+		int[] ids = new int[size];
+		double[] weights = new double[size];
+		size = 0;
+		for(int i=0;i<vector.size();i++) {
+			int id = vector.getId(i);
+			double value = vector.getValue(i);
+			ids[size] = id;
+			weights[size++] = value;
+			if(id<terms)
+				for(int position=rowOffsets[id];position<rowOffsets[id+1];position++) {
+					ids[size] = columns[position];
+					weights[size++] = values[position]*value;
+				}
+		}
+		return SparseVector.fromFeatureCounts(ids, weights);
+	}
+	/**
+	 * @param vector1 a feature vector
+	 * @param vector2 a feature vector
+	 * @return the inner product between the vectors under the matrix
+	 */
+	public double dot(SparseVector vector1, SparseVector vector2) {
+		return vector1.dot(multiply(vector2));
+	}
+	/**
+	 * @param vector a feature vector
+	 * @return the norm of the vector under the matrix
+	 */
+	public double norm(SparseVector vector) {
+		return Math.sqrt(Math.max(0, dot(vector, vector)));
+	}
+	/**
+	 * @param vector1 a feature vector
+	 * @param vector2 a feature vector
+	 * @return the soft cosine similarity between the vectors (zero if either vector is zero)
+	 */
+	public double similarity(SparseVector vector1, SparseVector vector2) {
+		double norms = norm(vector1)*norm(vector2);
+		if(norms==0)
+			return 0;
+		return Math.max(-1, Math.min(1, dot(vector1, vector2)/norms));//guards against rounding errors
+	}
+}
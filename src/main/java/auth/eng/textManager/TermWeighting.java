@@ -0,0 +1,283 @@
+package auth.eng.textManager;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighs term frequency vectors obtained by {@link WordModel#getSentenceTermFrequencyVector(String)} with TF-IDF
+ * or BM25. Document frequencies are maintained incrementally in concurrent primitive counters, so that documents can
+ * be added from multiple threads while others compute weights, without a second pass over the corpus.
+ * <br>
+ * Weights are computed from a {@link Snapshot} of the corpus statistics, which can be reused to weigh many vectors
+ * consistently. Snapshots hold the document frequencies of whole documents, so they are not affected by documents that
+ * are added afterwards. Counters are kept in segments of 4096 features and each snapshot copies only the segments
+ * that changed since the previous one, sharing the rest with it, so that interleaving additions with snapshots costs
+ * time proportional to the features of the added documents instead of the whole vocabulary. Additions wait only
+ * while those segments are copied. Still, weighing many vectors should reuse one snapshot instead of calling
+ * {@link #weigh(SparseVector)} for each.
+ * <br>
+ * Document frequencies are counted separately from the ones of the {@link Vocabulary}, which counts every vectorized
+ * sentence and is not thread-safe, whereas weighting counts only the documents it is given (e.g. whole documents
+ * composed of several sentences) and can do so concurrently. They are indexed by feature id and, when constructed for
+ * a vocabulary, are remapped whenever it is pruned. Otherwise, or when vocabularies are merged, {@link #remap(int[])}
+ * should be called with the new ids.
+ * @author Emmanouil Krasanakis
+ */
+public class TermWeighting {
+	private static final int SEGMENT_BITS = 12;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_BITS)-1;
+	
+	public enum Scheme {
+		/** Term frequency only */
+		TF,
+		/** Term frequency multiplied by the smoothed inverse document frequency log((1+N)/(1+df))+1 */
+		TF_IDF,
+		/** Okapi BM25 term weights, which saturate term frequencies and normalize by document length */
+		BM25
+	}
+	
+	/**
+	 * Document frequencies of a range of feature ids, which records whether it changed since the last snapshot.
+	 */
+	private static class Segment {
+		private final AtomicIntegerArray documentFrequencies = new AtomicIntegerArray(1 << SEGMENT_BITS);
+		private volatile boolean modified = true;
+	}
+	
+	/**
+	 * Corpus statistics at a point in time.
+	 */
+	public static class Snapshot {
+		private final long documents;
+		private final double averageLength;
+		private final int[][] documentFrequencies;//segments that did not change are shared between snapshots
+		private Snapshot(long documents, double averageLength, int[][] documentFrequencies) {
+			this.documents = documents;
+			this.averageLength = averageLength;
+			this.documentFrequencies = documentFrequencies;
+		}
+		/**
+		 * @return the number of documents added up to the snapshot
+		 */
+		public long getDocumentCount() {
+			return documents;
+		}
+		/**
+		 * @return the average length of documents added up to the snapshot
+		 */
+		public double getAverageLength() {
+			return averageLength;
+		}
+		/**
+		 * @param id a feature id
+		 * @return the number of documents added up to the snapshot that contain the feature
+		 */
+		public int getDocumentFrequency(int id) {
+			int segment = id >>> SEGMENT_BITS;
+			return segment<documentFrequencies.length?documentFrequencies[segment][id & SEGMENT_MASK]:0;
+		}
+	}
+	
+	private final Scheme scheme;
+	private final double k1;
+	private final double b;
+	private volatile Segment[] segments = new Segment[0];
+	private long documents = 0;
+	private double totalLength = 0;
+	private Snapshot snapshot = null;
+	private boolean modified = true;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();//adds share the lock, snapshots and remaps exclude them
+	
+	public TermWeighting(Scheme scheme) {
+		this(scheme, 1.2, 0.75);
+	}
+	/**
+	 * @param scheme the weighting scheme
+	 * @param k1 the term frequency saturation of BM25
+	 * @param b the document length normalization of BM25
+	 */
+	public TermWeighting(Scheme scheme, double k1, double b) {
+		this.scheme = scheme;
+		this.k1 = k1;
+		this.b = b;
+	}
+	/**
+	 * @param scheme the weighting scheme
+	 * @param vocabulary the vocabulary of weighted features, whose pruning remaps document frequencies
+	 */
+	public TermWeighting(Scheme scheme, Vocabulary vocabulary) {
+		this(scheme, 1.2, 0.75, vocabulary);
+	}
+	/**
+	 * @param scheme the weighting scheme
+	 * @param k1 the term frequency saturation of BM25
+	 * @param b the document length normalization of BM25
+	 * @param vocabulary the vocabulary of weighted features, whose pruning remaps document frequencies
+	 */
+	public TermWeighting(Scheme scheme, double k1, double b, Vocabulary vocabulary) {
+		this(scheme, k1, b);
+		vocabulary.addRemapListener(this::remap);
+	}
+	private Segment segment(int id) {
+		Segment[] current = segments;
+		int segment = id >>> SEGMENT_BITS;
+		if(segment<current.length)
+			return current[segment];
+		synchronized(this) {
+			current = segments;
+			if(segment>=current.length) {
+				Segment[] grown = new Segment[Math.max(segment+1, current.length*2)];
+				System.arraycopy(current, 0, grown, 0, current.length);
+				for(int i=current.length;i<grown.length;i++)
+					grown[i] = new Segment();
+				segments = current = grown;
+			}
+			return current[segment];
+		}
+	}
+	/**
+	 * Adds a document to the corpus statistics. Can be called concurrently.
+	 * @param termFrequencies the term frequency vector of the document
+	 */
+	public void add(SparseVector termFrequencies) {
+		double length = termFrequencies.sum();
+		lock.readLock().lock();
+		try {
+			for(int i=0;i<termFrequencies.size();i++) {
+				int id = termFrequencies.getId(i);
+				Segment segment = segment(id);
+				segment.documentFrequencies.incrementAndGet(id & SEGMENT_MASK);
+				if(!segment.modified)
+					segment.modified = true;
+			}
+			synchronized(this) {
+				documents++;
+				totalLength += length;
+				modified = true;
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	/**
+	 * @param id a feature id
+	 * @return the number of added documents that contain the feature
+	 */
+	public int getDocumentFrequency(int id) {
+		Segment[] current = segments;
+		int segment = id >>> SEGMENT_BITS;
+		if(segment>=current.length)
+			return 0;
+		return current[segment].documentFrequencies.get(id & SEGMENT_MASK);
+	}
+	/**
+	 * @return the current corpus statistics, which are the same object as long as no documents are added
+	 */
+	public Snapshot snapshot() {
+		synchronized(this) {
+			if(!modified)
+				return snapshot;
+		}
+		lock.writeLock().lock();
+		try {
+			Segment[] current = segments;
+			int[][] previous = snapshot==null?new int[0][]:snapshot.documentFrequencies;
+			int[][] documentFrequencies = new int[current.length][];
+			for(int segment=0;segment<current.length;segment++) {
+				if(!current[segment].modified && segment<previous.length) {
+					documentFrequencies[segment] = previous[segment];
+					continue;
+				}
+				current[segment].modified = false;
+				int[] copy = new int[1 << SEGMENT_BITS];
+				for(int i=0;i<copy.length;i++)
+					copy[i] = current[segment].documentFrequencies.get(i);
+				documentFrequencies[segment] = copy;
+			}
+			synchronized(this) {
+				snapshot = new Snapshot(documents, documents==0?0:totalLength/documents, documentFrequencies);
+				modified = false;
+				return snapshot;
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	/**
+	 * Moves document frequencies to new feature ids, such as the ones returned by {@link Vocabulary#prune(int, int, double)}
+	 * or {@link Vocabulary.Merge#getRemap(int)}. Frequencies of removed features are discarded, whereas document
+	 * counts and lengths are kept.
+	 * @param remap the new id of each previous id, or -1 for removed ids
+	 */
+	public void remap(int[] remap) {
+		lock.writeLock().lock();
+		try {
+			Segment[] current = segments;
+			int maxId = -1;
+			for(int id : remap)
+				maxId = Math.max(maxId, id);
+			Segment[] remapped = new Segment[maxId<0?0:(maxId >>> SEGMENT_BITS)+1];
+			for(int i=0;i<remapped.length;i++)
+				remapped[i] = new Segment();
+			for(int id=0;id<remap.length && (id >>> SEGMENT_BITS)<current.length;id++)
+				if(remap[id]!=-1)
+					remapped[remap[id] >>> SEGMENT_BITS].documentFrequencies.addAndGet(remap[id] & SEGMENT_MASK, current[id >>> SEGMENT_BITS].documentFrequencies.get(id & SEGMENT_MASK));
+			synchronized(this) {
+				segments = remapped;
+				snapshot = null;
+				modified = true;
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	/**
+	 * @param termFrequencies a term frequency vector
+	 * @return the weighted vector, based on the current corpus statistics
+	 * @see #weigh(SparseVector, Snapshot)
+	 */
+	public SparseVector weigh(SparseVector termFrequencies) {
+		return weigh(termFrequencies, snapshot());
+	}
+	/**
+	 * @param termFrequencies a term frequency vector
+	 * @param snapshot corpus statistics obtained through {@link #snapshot()}
+	 * @return the weighted vector
+	 */
+	public SparseVector weigh(SparseVector termFrequencies, Snapshot snapshot) {
+		int[] ids = new int[termFrequencies.size()];
+		double[] values = new double[ids.length];
+		double lengthNormalization = 1;
+		if(scheme==Scheme.BM25 && snapshot.averageLength>0)
+			lengthNormalization = 1-b+b*termFrequencies.sum()/snapshot.averageLength;
+		for(int i=0;i<ids.length;i++) {
+			ids[i] = termFrequencies.getId(i);
+			values[i] = weigh(termFrequencies.getValue(i), snapshot.getDocumentFrequency(ids[i]), lengthNormalization, snapshot);
+		}
+		return new SparseVector(ids, values);
+	}
+	private double weigh(double termFrequency, long documentFrequency, double lengthNormalization, Snapshot snapshot) {
+		if(scheme==Scheme.TF)
+			return termFrequency;
+		if(scheme==Scheme.TF_IDF)
+			return termFrequency*(Math.log((1.0+snapshot.documents)/(1.0+documentFrequency))+1);
+		double idf = Math.log(1+(snapshot.documents-documentFrequency+0.5)/(documentFrequency+0.5));
+		return idf*termFrequency*(k1+1)/(termFrequency+k1*lengthNormalization);
+	}
+	/**
+	 * @param id a feature id
+	 * @param snapshot corpus statistics obtained through {@link #snapshot()}
+	 * @return the inverse document frequency of the feature under the weighting scheme (1 for {@link Scheme#TF})
+	 */
+	public double getInverseDocumentFrequency(int id, Snapshot snapshot) {
+		long documentFrequency = snapshot.getDocumentFrequency(id);
+		if(scheme==Scheme.TF)
+			return 1;
+		if(scheme==Scheme.TF_IDF)
+			return Math.log((1.0+snapshot.documents)/(1.0+documentFrequency))+1;
+		return Math.log(1+(snapshot.documents-documentFrequency+0.5)/(documentFrequency+0.5));
+	}
+}
@@ -0,0 +1,143 @@
+package auth.eng.textManager;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads files written by a {@link VectorFileWriter}. Blocks are memory-mapped when first accessed and rows are
+ * returned as {@link SparseVectorView}s over the mapped data, so that any row can be accessed without reading the
+ * rest of the file.
+ * @author Emmanouil Krasanakis
+ */
+public class VectorFileReader implements Closeable {
+	private final FileChannel channel;
+	private final long vocabularyHash;
+	private final long rows;
+	private final int dimensions;
+	private final String modelName;
+	private final String stemmerName;
+	private final long indexPosition;
+	private final long[] blockPositions;
+	private final long[] blockFirstRows;
+	private final MappedByteBuffer[] blocks;
+	
+	/**
+	 * @param path a file written by a {@link VectorFileWriter}
+	 * @throws IOException if the file cannot be read or is not a vector file
+	 */
+	public VectorFileReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+			if(input.readInt()!=VectorFileWriter.MAGIC)
+				throw new IOException("Not a vector file: "+path);
+			int version = input.readInt();
+			if(version!=VectorFileWriter.VERSION)
+				throw new IOException("Unsupported vector file version "+version);
+			vocabularyHash = input.readLong();
+			rows = input.readLong();
+			dimensions = input.readInt();
+			indexPosition = input.readLong();
+			modelName = input.readUTF();
+			stemmerName = input.readUTF();
+			if(indexPosition<channel.position() || indexPosition>channel.size()-4)//the index position is only written when the writer is closed
+				throw new IOException("Incomplete vector file (its writer was not closed): "+path);
+			channel.position(indexPosition);
+			input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			int blockCount = input.readInt();
+			if(blockCount<0 || blockCount>(channel.size()-indexPosition-4)/16)
+				throw new IOException("Corrupted vector file index: "+path);
+			blockPositions = new long[blockCount];
+			blockFirstRows = new long[blockCount];
+			for(int i=0;i<blockCount;i++) {
+				blockPositions[i] = input.readLong();
+				blockFirstRows[i] = input.readLong();
+			}
+			blocks = new MappedByteBuffer[blockCount];
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	/**
+	 * @return the number of stored rows
+	 */
+	public long size() {
+		return rows;
+	}
+	/**
+	 * @return the length of the stored vectors
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+	/**
+	 * @return the name of the model that produced the vectors
+	 * @see WordModel#getName()
+	 */
+	public String getModelName() {
+		return modelName;
+	}
+	/**
+	 * @return the name of the stemmer of the model that produced the vectors
+	 */
+	public String getStemmerName() {
+		return stemmerName;
+	}
+	/**
+	 * @return the hash of the vocabulary that assigned the vectors' dimensions
+	 * @see Vocabulary#getHash()
+	 */
+	public long getVocabularyHash() {
+		return vocabularyHash;
+	}
+	/**
+	 * @param model a word model
+	 * @return true if the model, its stemmer and its vocabulary are the ones that produced the stored vectors
+	 */
+	public boolean isCompatible(WordModel model) {
+		return modelName.equals(model.getName()) && stemmerName.equals(model.getStemmer().getName())
+				&& vocabularyHash==model.getVocabulary().getHash();
+	}
+	private synchronized MappedByteBuffer getBlock(int block) throws IOException {
+		if(blocks[block]==null) {
+			long end = block+1<blockPositions.length?blockPositions[block+1]:indexPosition;
+			blocks[block] = channel.map(FileChannel.MapMode.READ_ONLY, blockPositions[block], end-blockPositions[block]);
+		}
+		return blocks[block];
+	}
+	/**
+	 * @param row a row in the range [0, {@link #size()})
+	 * @return a view of the row over the mapped file
+	 * @throws IOException if the row's block cannot be mapped
+	 */
+	public SparseVectorView getRow(long row) throws IOException {
+		if(row<0 || row>=rows)
+			throw new IndexOutOfBoundsException("Row "+row+" out of "+rows);
+		int block = Arrays.binarySearch(blockFirstRows, row);
+		if(block<0)
+			block = -block-2;
+		ByteBuffer data = getBlock(block);
+		int blockRows = data.getInt(0);
+		int entries = data.getInt(4);
+		int offsetPosition = 8+4*(int)(row-blockFirstRows[block]);
+		int start = data.getInt(offsetPosition);
+		int end = data.getInt(offsetPosition+4);
+		int idsPosition = 8+4*(blockRows+1);
+		return new SparseVectorView(data, idsPosition+4*start, idsPosition+4*entries+8*start, end-start);
+	}
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
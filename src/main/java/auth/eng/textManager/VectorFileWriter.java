@@ -0,0 +1,178 @@
+package auth.eng.textManager;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams the vectors produced by a {@link WordModel} to a binary file, so that they can be reused through a
+ * {@link VectorFileReader} without recomputing features. All numbers are big-endian and the file is laid out as:
+ * <pre>
+ * header
+ *   int    magic ({@value #MAGIC}, the ASCII characters TMVF)
+ *   int    format version ({@value #VERSION})
+ *   long   vocabulary hash, as obtained by {@link Vocabulary#getHash()} when the writer is closed
+ *   long   number of rows
+ *   int    number of dimensions (exceeds all component ids)
+ *   long   position of the block index
+ *   UTF    model name, as obtained by {@link WordModel#getName()} (modified UTF-8, as in {@link DataOutputStream#writeUTF(String)})
+ *   UTF    stemmer name, as obtained by {@link auth.eng.textManager.stemmers.Stemmer#getName()}
+ * CSR blocks, each of which holds consecutive rows
+ *   int    number of rows r
+ *   int    number of components e
+ *   int[r+1] offsets of each row's components within the block
+ *   int[e] component ids (ascending within each row)
+ *   double[e] component values
+ * block index
+ *   int    number of blocks
+ *   for each block: long position of the block, long first row of the block
+ * </pre>
+ * The vocabulary hash, row count, dimensions and index position are filled in when the writer is closed.
+ * @author Emmanouil Krasanakis
+ */
+public class VectorFileWriter implements Closeable {
+	public static final int MAGIC = 0x544D5646;
+	public static final int VERSION = 1;
+	static final int HEADER_HASH_POSITION = 8;
+	private static final int MAX_BLOCK_ROWS = 4096;
+	private static final int MAX_BLOCK_ENTRIES = 1 << 22;
+	private final WordModel model;
+	private final FileChannel channel;
+	private final DataOutputStream output;
+	private long position;
+	private long rows = 0;
+	private int dimensions = 0;
+	private long[] blockPositions = new long[16];
+	private long[] blockFirstRows = new long[16];
+	private int blocks = 0;
+	private int[] blockOffsets = new int[MAX_BLOCK_ROWS+1];
+	private int[] blockIds = new int[1024];
+	private double[] blockValues = new double[1024];
+	private int blockRows = 0;
+	
+	/**
+	 * @param path the file to write (overwritten if it exists)
+	 * @param model the model whose vectors are written
+	 * @throws IOException if the file cannot be created
+	 */
+	public VectorFileWriter(Path path, WordModel model) throws IOException {
+		this.model = model;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(0);
+			output.writeLong(0);
+			output.writeInt(0);
+			output.writeLong(0);
+			output.writeUTF(model.getName());
+			output.writeUTF(model.getStemmer().getName());
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+		position = output.size();
+	}
+	/**
+	 * @param vector a vector, such as the ones obtained by {@link WordModel#getSentenceSparseFeatureVector(String)}
+	 * @return the row of the written vector
+	 * @throws IOException if writing fails
+	 */
+	public long write(SparseVector vector) throws IOException {
+		int start = blockOffsets[blockRows];
+		if(start+vector.size()>blockIds.length) {
+			blockIds = Arrays.copyOf(blockIds, Math.max(blockIds.length*2, start+vector.size()));
+			blockValues = Arrays.copyOf(blockValues, blockIds.length);
+		}
+		for(int i=0;i<vector.size();i++) {
+			blockIds[start+i] = vector.getId(i);
+			blockValues[start+i] = vector.getValue(i);
+		}
+		if(vector.size()!=0)
+			dimensions = Math.max(dimensions, vector.getId(vector.size()-1)+1);
+		blockOffsets[++blockRows] = start+vector.size();
+		long row = rows++;
+		if(blockRows==MAX_BLOCK_ROWS || blockOffsets[blockRows]>=MAX_BLOCK_ENTRIES)
+			flushBlock();
+		return row;
+	}
+	/**
+	 * @param vector a dense vector, such as the ones obtained by {@link WordModel#getSentenceFeatureVector(String)}
+	 * @return the row of the written vector, whose zero components are not stored
+	 * @throws IOException if writing fails
+	 */
+	public long write(double[] vector) throws IOException {
+		int count = 0;
+		for(double value : vector)
+			if(value!=0)
+				count++;
+		int[] ids = new int[count];
+		double[] values = new double[count];
+		count = 0;
+		for(int i=0;i<vector.length;i++)
+			if(vector[i]!=0) {
+				ids[count] = i;
+				values[count++] = vector[i];
+			}
+		return write(new SparseVector(ids, values));
+	}
+	private void flushBlock() throws IOException {
+		if(blockRows==0)
+			return;
+		if(blocks==blockPositions.length) {
+			blockPositions = Arrays.copyOf(blockPositions, blocks*2);
+			blockFirstRows = Arrays.copyOf(blockFirstRows, blocks*2);
+		}
+		blockPositions[blocks] = position;
+		blockFirstRows[blocks] = rows-blockRows;
+		blocks++;
+		int entries = blockOffsets[blockRows];
+		output.writeInt(blockRows);
+		output.writeInt(entries);
+		for(int i=0;i<=blockRows;i++)
+			output.writeInt(blockOffsets[i]);
+		for(int i=0;i<entries;i++)
+			output.writeInt(blockIds[i]);
+		for(int i=0;i<entries;i++)
+			output.writeDouble(blockValues[i]);
+		position += 8+4L*(blockRows+1)+12L*entries;
+		blockRows = 0;
+	}
+	/**
+	 * Writes any pending rows, the block index and the final header fields.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBlock();
+			long indexPosition = position;
+			output.writeInt(blocks);
+			for(int i=0;i<blocks;i++) {
+				output.writeLong(blockPositions[i]);
+				output.writeLong(blockFirstRows[i]);
+			}
+			output.flush();
+			ByteBuffer header = ByteBuffer.allocate(28);
+			header.putLong(model.getVocabulary().getHash());
+			header.putLong(rows);
+			header.putInt(Math.max(dimensions, model.getCurrentFeatureVectorLength()));
+			header.putLong(indexPosition);
+			header.flip();
+			long headerPosition = HEADER_HASH_POSITION;
+			while(header.hasRemaining())
+				headerPosition += channel.write(header, headerPosition);
+		}
+		finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package auth.eng.textManager;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Corpus of sparse vectors kept off the Java heap in compressed sparse row (CSR) layout, so that the heap usage and
+ * garbage collection cost do not grow with the number of stored vectors.
+ * <br>
+ * Component ids and values are appended to direct buffer chunks, each holding an id region followed by a value region,
+ * and rows never span chunks (rows larger than a chunk get a dedicated chunk). Row offsets are also kept in direct
+ * buffers. Rows are accessed through {@link SparseVectorView}s that read the chunks in place.
+ * <br>
+ * Appends are synchronized. Rows that have been appended never change, so they can be read by other threads
+ * while appends continue.
+ * @author Emmanouil Krasanakis
+ */
+public class VectorStore {
+	private static final int ROW_BYTES = 8;
+	private static final int ROWS_PER_CHUNK = 1 << 16;
+	private final int chunkEntries;
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+	private volatile ByteBuffer[] rowChunks = new ByteBuffer[0];
+	private volatile int size = 0;
+	private int chunkUsed = 0;
+	private long entries = 0;
+	
+	public VectorStore() {
+		this(1 << 20);
+	}
+	/**
+	 * @param chunkEntries the number of components held by each off-heap chunk
+	 */
+	public VectorStore(int chunkEntries) {
+		if(chunkEntries<=0 || chunkEntries>Integer.MAX_VALUE/12)
+			throw new IllegalArgumentException("Invalid number of chunk entries");
+		this.chunkEntries = chunkEntries;
+	}
+	/**
+	 * @return the number of stored rows
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * @return the total number of stored non-zero components
+	 */
+	public synchronized long getEntryCount() {
+		return entries;
+	}
+	/**
+	 * @param vector a vector, such as the ones obtained by {@link WordModel#getSentenceSparseFeatureVector(String)}
+	 * @return the row id of the vector, which is the number of previously appended vectors
+	 */
+	public int append(SparseVector vector) {
+		int[] ids = new int[vector.size()];
+		double[] values = new double[ids.length];
+		for(int i=0;i<ids.length;i++) {
+			ids[i] = vector.getId(i);
+			values[i] = vector.getValue(i);
+		}
+		return append(ids, values, ids.length);
+	}
+	/**
+	 * @param vector a dense vector, such as the ones obtained by {@link WordModel#getSentenceFeatureVector(String)}
+	 * @return the row id of the vector, whose zero components are not stored
+	 */
+	public int append(double[] vector) {
+		int count = 0;
+		for(double value : vector)
+			if(value!=0)
+				count++;
+		int[] ids = new int[count];
+		double[] values = new double[count];
+		count = 0;
+		for(int i=0;i<vector.length;i++)
+			if(vector[i]!=0) {
+				ids[count] = i;
+				values[count++] = vector[i];
+			}
+		return append(ids, values, count);
+	}
+	private synchronized int append(int[] ids, double[] values, int length) {
+		ByteBuffer[] chunks = this.chunks;
+		if(chunks.length==0 || chunkUsed+length>chunkCapacity(chunks[chunks.length-1])) {
+			chunks = Arrays.copyOf(chunks, chunks.length+1);
+			chunks[chunks.length-1] = ByteBuffer.allocateDirect(12*Math.max(length, chunkEntries));
+			chunkUsed = 0;
+		}
+		int chunk = chunks.length-1;
+		ByteBuffer data = chunks[chunk];
+		int valuesStart = 4*chunkCapacity(data);
+		for(int i=0;i<length;i++) {
+			data.putInt(4*(chunkUsed+i), ids[i]);
+			data.putDouble(valuesStart+8*(chunkUsed+i), values[i]);
+		}
+		int row = size;
+		ByteBuffer[] rowChunks = this.rowChunks;
+		if(row/ROWS_PER_CHUNK==rowChunks.length) {
+			rowChunks = Arrays.copyOf(rowChunks, rowChunks.length+1);
+			rowChunks[rowChunks.length-1] = ByteBuffer.allocateDirect(2*ROW_BYTES*ROWS_PER_CHUNK);
+		}
+		ByteBuffer rowData = rowChunks[row/ROWS_PER_CHUNK];
+		int rowPosition = 2*ROW_BYTES*(row%ROWS_PER_CHUNK);
+		rowData.putLong(rowPosition, ((long)chunk << 32) | chunkUsed);
+		rowData.putLong(rowPosition+ROW_BYTES, length);
+		chunkUsed += length;
+		entries += length;
+		this.chunks = chunks;
+		this.rowChunks = rowChunks;
+		size = row+1;//volatile write publishes the row
+		return row;
+	}
+	private static int chunkCapacity(ByteBuffer chunk) {
+		return chunk.capacity()/12;
+	}
+	/**
+	 * @param row a row id
+	 * @return a view of the row that reads it in place
+	 */
+	public SparseVectorView getRow(int row) {
+		if(row<0 || row>=size)
+			throw new IndexOutOfBoundsException("Row "+row+" out of "+size);
+		ByteBuffer rowData = rowChunks[row/ROWS_PER_CHUNK];
+		int rowPosition = 2*ROW_BYTES*(row%ROWS_PER_CHUNK);
+		long start = rowData.getLong(rowPosition);
+		int length = (int)rowData.getLong(rowPosition+ROW_BYTES);
+		ByteBuffer data = chunks[(int)(start >>> 32)];
+		int offset = (int)start;
+		return new SparseVectorView(data, 4*offset, 4*chunkCapacity(data)+8*offset, length);
+	}
+}
@@ -0,0 +1,353 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import auth.eng.textManager.util.LongIntHashMap;
+
+/**
+ * Vocabulary of a {@link WordModel}, which assigns consecutive vector dimensions (ids) to discovered features and
+ * tracks how frequently each feature occurs. Features are either strings or <code>long</code> feature keys.
+ * <br>
+ * Rare or overly common features can be removed through {@link #prune(int, int, double)}, which compacts ids and
+ * returns a remap table for vectors that were already produced. A streaming cap can also be set through
+ * {@link #setStreamingCap(int)}, in which case the least frequent features are pruned whenever the cap is exceeded.
+ * @author Emmanouil Krasanakis
+ */
+public class Vocabulary {
+	private static final double STREAMING_RETAINED_FRACTION = 0.9;
+	private HashMap<String, Integer> textIds = new HashMap<String, Integer>();
+	private LongIntHashMap keyIds = new LongIntHashMap();
+	private String[] texts = new String[16];
+	private long[] keys = new long[16];
+	private long[] counts = new long[16];
+	private int[] documentFrequencies = new int[16];
+	private int size = 0;
+	private long documents = 0;
+	private int streamingCap = 0;
+	private boolean localKeys = false;
+	private ArrayList<Consumer<int[]>> remapListeners = new ArrayList<Consumer<int[]>>();
+	
+	/**
+	 * @return the number of features (i.e. the length of feature vectors)
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * @param feature a given string feature
+	 * @return the id of the feature or -1 if it has not been discovered
+	 */
+	public int getId(String feature) {
+		Integer id = textIds.get(feature);
+		return id==null?-1:id;
+	}
+	/**
+	 * @param key a given feature key
+	 * @return the id of the key or -1 if it has not been discovered
+	 */
+	public int getId(long key) {
+		return keyIds.get(key);
+	}
+	/**
+	 * @param feature a given string feature
+	 * @return the id of the feature, which is added to the vocabulary if not already present
+	 */
+	public int add(String feature) {
+		Integer id = textIds.get(feature);
+		if(id==null) {
+			textIds.put(feature, id = allocate());
+			texts[id] = feature;
+		}
+		return id;
+	}
+	/**
+	 * @param key a given feature key
+	 * @return the id of the key, which is added to the vocabulary if not already present
+	 */
+	public int add(long key) {
+		int id = keyIds.get(key);
+		if(id==-1) {
+			keyIds.put(key, id = allocate());
+			keys[id] = key;
+		}
+		return id;
+	}
+	private int allocate() {
+		if(size==texts.length) {
+			texts = Arrays.copyOf(texts, size*2);
+			keys = Arrays.copyOf(keys, size*2);
+			counts = Arrays.copyOf(counts, size*2);
+			documentFrequencies = Arrays.copyOf(documentFrequencies, size*2);
+		}
+		return size++;
+	}
+	/**
+	 * Marks that the vocabulary contains feature keys that can only be interpreted by the model that produced them
+	 * (e.g. keys that pack the model's word ids), so that they are never merged with the keys of other vocabularies.
+	 */
+	void markLocalKeys() {
+		localKeys = true;
+	}
+	/**
+	 * @return true if the vocabulary contains feature keys that are local to the model that produced them
+	 * @see #merge(Vocabulary...)
+	 */
+	public boolean hasLocalKeys() {
+		return localKeys;
+	}
+	/**
+	 * @param id a feature id
+	 * @return the string feature of the given id or <code>null</code> if it corresponds to a feature key
+	 */
+	public String getText(int id) {
+		return texts[id];
+	}
+	/**
+	 * @param id a feature id
+	 * @return the feature key of the given id (meaningless for string features)
+	 */
+	public long getKey(int id) {
+		return keys[id];
+	}
+	/**
+	 * @param id a feature id
+	 * @return the total number of times the feature has occurred
+	 */
+	public long getCount(int id) {
+		return counts[id];
+	}
+	/**
+	 * @param id a feature id
+	 * @return the number of documents (e.g. sentences) in which the feature has occurred
+	 */
+	public int getDocumentFrequency(int id) {
+		return documentFrequencies[id];
+	}
+	/**
+	 * @return the number of documents counted through {@link #countDocument(int[])}
+	 */
+	public long getDocumentCount() {
+		return documents;
+	}
+	/**
+	 * Computes a hash of the vocabulary's features in id order, which identifies the vector dimensions that the
+	 * vocabulary assigns (e.g. to check that stored vectors are compatible with a model).
+	 * @return a 64-bit hash of the vocabulary
+	 */
+	public long getHash() {
+		long hash = 0xcbf29ce484222325L;
+		for(int id=0;id<size;id++) {
+			if(texts[id]!=null) {
+				hash = (hash ^ 1)*0x100000001b3L;
+				for(int i=0;i<texts[id].length();i++)
+					hash = (hash ^ texts[id].charAt(i))*0x100000001b3L;
+				hash = (hash ^ texts[id].length())*0x100000001b3L;
+			}
+			else
+				hash = (hash ^ 2 ^ keys[id])*0x100000001b3L;
+		}
+		return hash;
+	}
+	/**
+	 * Counts the features of a document (e.g. a sentence) and, if a streaming cap is set, prunes the vocabulary
+	 * when it exceeds the cap.
+	 * @param featureIds the ids of all the features occurring in the document (possibly repeated)
+	 * @return the remap table of {@link #prune(int, int, double)} if the document caused pruning, <code>null</code> otherwise
+	 */
+	public int[] countDocument(int[] featureIds) {
+		int[] sorted = featureIds.clone();
+		Arrays.sort(sorted);
+		for(int i=0;i<sorted.length;i++) {
+			counts[sorted[i]]++;
+			if(i==0 || sorted[i]!=sorted[i-1])
+				documentFrequencies[sorted[i]]++;
+		}
+		documents++;
+		if(streamingCap!=0 && size>streamingCap)
+			return prune(0, (int)(streamingCap*STREAMING_RETAINED_FRACTION), 1);
+		return null;
+	}
+	/**
+	 * Sets a cap on the number of features. Whenever the cap is exceeded, the vocabulary is pruned to the most
+	 * frequent features, leaving some room for new ones so that pruning is not repeated for every new feature.
+	 * @param maxSize the maximum number of features (0 for no cap)
+	 * @see #addRemapListener(Consumer)
+	 */
+	public void setStreamingCap(int maxSize) {
+		if(maxSize<0)
+			throw new IllegalArgumentException("The streaming cap should be non-negative");
+		streamingCap = maxSize;
+	}
+	/**
+	 * @param listener a listener that is notified with the remap table of each pruning
+	 */
+	public void addRemapListener(Consumer<int[]> listener) {
+		remapListeners.add(listener);
+	}
+	/**
+	 * @param listener a listener previously added through {@link #addRemapListener(Consumer)}
+	 */
+	public void removeRemapListener(Consumer<int[]> listener) {
+		remapListeners.remove(listener);
+	}
+	/**
+	 * Removes rare and overly common features and compacts the ids of the rest, retaining their relative order.
+	 * @param minCount features occurring fewer times are removed
+	 * @param maxSize at most this many features are retained, preferring the most frequent ones
+	 * @param maxDocumentFrequency features occurring in a larger fraction of documents are removed
+	 * @return a table that maps each previous id to its new one, or to -1 for removed features
+	 * @see SparseVector#remap(int[])
+	 * @see #remap(double[], int[])
+	 */
+	public int[] prune(int minCount, int maxSize, double maxDocumentFrequency) {
+		boolean[] retained = new boolean[size];
+		int retainedCount = 0;
+		for(int id=0;id<size;id++)
+			if(counts[id]>=minCount && documentFrequencies[id]<=maxDocumentFrequency*documents) {
+				retained[id] = true;
+				retainedCount++;
+			}
+		if(retainedCount>maxSize) {
+			long[] order = new long[retainedCount];
+			int pos = 0;
+			for(int id=0;id<size;id++)
+				if(retained[id])
+					order[pos++] = ((Integer.MAX_VALUE-Math.min(counts[id], Integer.MAX_VALUE)) << 31) | id;//descending count, then ascending id
+			Arrays.sort(order);
+			for(int i=maxSize;i<order.length;i++)
+				retained[(int)(order[i] & Integer.MAX_VALUE)] = false;
+		}
+		int[] remap = new int[size];
+		int newSize = 0;
+		for(int id=0;id<size;id++) {
+			if(!retained[id]) {
+				remap[id] = -1;
+				continue;
+			}
+			remap[id] = newSize;
+			texts[newSize] = texts[id];
+			keys[newSize] = keys[id];
+			counts[newSize] = counts[id];
+			documentFrequencies[newSize] = documentFrequencies[id];
+			newSize++;
+		}
+		Arrays.fill(texts, newSize, size, null);
+		size = newSize;
+		textIds.clear();
+		keyIds.clear();
+		for(int id=0;id<size;id++) {
+			if(texts[id]!=null)
+				textIds.put(texts[id], id);
+			else
+				keyIds.put(keys[id], id);
+		}
+		for(Consumer<int[]> listener : remapListeners)
+			listener.accept(remap);
+		return remap;
+	}
+	/**
+	 * Result of {@link Vocabulary#merge(Vocabulary...)}.
+	 */
+	public static class Merge {
+		private final Vocabulary vocabulary;
+		private final int[][] remaps;
+		private Merge(Vocabulary vocabulary, int[][] remaps) {
+			this.vocabulary = vocabulary;
+			this.remaps = remaps;
+		}
+		/**
+		 * @return the merged vocabulary
+		 */
+		public Vocabulary getVocabulary() {
+			return vocabulary;
+		}
+		/**
+		 * @param shard the position of a merged vocabulary
+		 * @return a table from the ids of that vocabulary to merged ids
+		 * @see SparseVector#remap(int[])
+		 * @see #remap(double[], int[])
+		 */
+		public int[] getRemap(int shard) {
+			return remaps[shard];
+		}
+	}
+	/**
+	 * Merges vocabularies built independently (e.g. by workers over shards of a corpus) into one, whose ids only
+	 * depend on the merged features and not on the order in which they were discovered. Features are ordered by
+	 * descending total count, then string features precede feature keys, and then string features are ordered
+	 * lexicographically and keys numerically. Counts, document frequencies and document counts are summed.
+	 * <br>
+	 * Feature keys are merged by value, which requires that keys denote the same features across the merged
+	 * vocabularies (e.g. the content hashes of {@link WordModel.CharacterNGram}). Keys that pack the word ids of
+	 * a specific model, such as the ones of n-gram models, cannot be merged.
+	 * @param shards the vocabularies to merge
+	 * @return the merged vocabulary and a remap table for each given vocabulary
+	 * @throws IllegalArgumentException if a vocabulary contains feature keys that are local to its model
+	 * @see #hasLocalKeys()
+	 */
+	public static Merge merge(Vocabulary... shards) {
+		for(Vocabulary vocabulary : shards)
+			if(vocabulary.localKeys)
+				throw new IllegalArgumentException("Cannot merge vocabularies whose feature keys are local to their word models");
+		Vocabulary merged = new Vocabulary();
+		int[][] remaps = new int[shards.length][];
+		for(int shard=0;shard<shards.length;shard++) {
+			Vocabulary vocabulary = shards[shard];
+			remaps[shard] = new int[vocabulary.size];
+			for(int id=0;id<vocabulary.size;id++) {
+				int mergedId = vocabulary.texts[id]!=null?merged.add(vocabulary.texts[id]):merged.add(vocabulary.keys[id]);
+				merged.counts[mergedId] += vocabulary.counts[id];
+				merged.documentFrequencies[mergedId] += vocabulary.documentFrequencies[id];
+				remaps[shard][id] = mergedId;
+			}
+			merged.documents += vocabulary.documents;
+		}
+		Integer[] order = new Integer[merged.size];
+		for(int id=0;id<order.length;id++)
+			order[id] = id;
+		Arrays.sort(order, (a, b) -> {
+			if(merged.counts[a]!=merged.counts[b])
+				return Long.compare(merged.counts[b], merged.counts[a]);
+			String textA = merged.texts[a];
+			String textB = merged.texts[b];
+			if(textA!=null && textB!=null)
+				return textA.compareTo(textB);
+			if(textA!=null || textB!=null)
+				return textA!=null?-1:1;
+			return Long.compare(merged.keys[a], merged.keys[b]);
+		});
+		Vocabulary ordered = new Vocabulary();
+		int[] finalIds = new int[merged.size];
+		for(int position=0;position<order.length;position++) {
+			int id = order[position];
+			int orderedId = merged.texts[id]!=null?ordered.add(merged.texts[id]):ordered.add(merged.keys[id]);
+			ordered.counts[orderedId] = merged.counts[id];
+			ordered.documentFrequencies[orderedId] = merged.documentFrequencies[id];
+			finalIds[id] = orderedId;
+		}
+		ordered.documents = merged.documents;
+		for(int[] remap : remaps)
+			for(int i=0;i<remap.length;i++)
+				remap[i] = finalIds[remap[i]];
+		return new Merge(ordered, remaps);
+	}
+	/**
+	 * @param vector a dense vector produced before pruning or merging
+	 * @param remap the remap table returned by {@link #prune(int, int, double)} or {@link Merge#getRemap(int)}
+	 * @return the vector in the dimensions of the pruned or merged vocabulary
+	 */
+	public static double[] remap(double[] vector, int[] remap) {
+		int length = 0;
+		for(int id : remap)
+			if(id!=-1)
+				length = id+1;
+		double[] ret = new double[length];
+		for(int i=0;i<vector.length && i<remap.length;i++)
+			if(remap[i]!=-1)
+				ret[remap[i]] = vector[i];
+		return ret;
+	}
+}
@@ -1,10 +1,15 @@
 package auth.eng.textManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import auth.eng.textManager.stemmers.Stemmer;
+import auth.eng.textManager.util.LongIntHashMap;
+import net.sf.extjwnl.JWNLException;
 import net.sf.extjwnl.data.IndexWord;
 import net.sf.extjwnl.data.POS;
 import net.sf.extjwnl.data.PointerUtils;
@@ -23,8 +28,23 @@ public abstract class WordModel {
 
 	// ------------- WORD MODEL PROPERTIES
 	private Stemmer stemmer;
-	private HashMap<String, Integer> wordId = new HashMap<String, Integer>();
-	private HashMap<Integer,String> wordText = new HashMap<Integer, String>();
+	private Vocabulary vocabulary = new Vocabulary();
+	
+	// ------------- FEATURE KEY PROPERTIES
+	private static final long GRAM_HASH_MULTIPLIER = 0x100000001b3L;
+	private boolean featureKeys = false;
+	private HashMap<String, Integer> unigramId = new HashMap<String, Integer>();
+	private ArrayList<String> unigramText = new ArrayList<String>();
+	private LongIntHashMap hashedGramIndex = new LongIntHashMap();
+	private ArrayList<int[]> hashedGrams = new ArrayList<int[]>();
+	
+	// ------------- FEATURE CACHE PROPERTIES
+	private static final AtomicLong nextCacheId = new AtomicLong();
+	private final long cacheId = nextCacheId.getAndIncrement();//identifies the model in feature caches without referencing it
+	private FeatureCache featureCache;
+	private volatile int vocabularyGeneration = 0;
+	private final Consumer<int[]> remapListener = remap -> vocabularyGeneration++;
+	private boolean lookupOnly = false;
 	
 	public WordModel(Stemmer stemmer) {
 		this.stemmer = stemmer;
@@ -37,6 +57,83 @@ public abstract class WordModel {
 	public Stemmer getStemmer() {
 		return stemmer;
 	}
+	/**
+	 * @return a name that identifies the model and its parameters (e.g. NGram(3))
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+	/**
+	 * @return the {@link Vocabulary} that assigns vector dimensions to the model's features
+	 */
+	public Vocabulary getVocabulary() {
+		return vocabulary;
+	}
+	/**
+	 * Replaces the model's vocabulary, for example with one obtained through {@link Vocabulary#merge(Vocabulary...)}
+	 * so that models of different workers produce the same ids.
+	 * @param vocabulary the new vocabulary
+	 * @return this word model
+	 * @throws IllegalArgumentException if the vocabulary contains feature keys that are local to another model
+	 */
+	public WordModel setVocabulary(Vocabulary vocabulary) {
+		if(vocabulary!=this.vocabulary && vocabulary.hasLocalKeys())
+			throw new IllegalArgumentException("The vocabulary contains feature keys of another word model");
+		if(featureCache!=null) {
+			this.vocabulary.removeRemapListener(remapListener);
+			vocabulary.addRemapListener(remapListener);
+		}
+		this.vocabulary = vocabulary;
+		vocabularyGeneration++;
+		return this;
+	}
+	/**
+	 * Switches between string features and feature keys. With feature keys, stemmed words are mapped to integer ids
+	 * and n-grams are represented as packed <code>long</code> keys (pairs) or rolling 64-bit hashes (longer grams),
+	 * so that vectorization does not create any gram strings. The string form of grams is materialized only by
+	 * {@link #convertVectorToFeatureSentence(double[])}.
+	 * @param featureKeys true to vectorize through {@link #getSentenceFeatureKeys(String)}
+	 * @return this word model
+	 */
+	public WordModel setFeatureKeys(boolean featureKeys) {
+		if(featureKeys!=this.featureKeys && getCurrentFeatureVectorLength()!=0)
+			throw new RuntimeException("Feature keys can only be switched before any features are discovered");
+		this.featureKeys = featureKeys;
+		return this;
+	}
+	/**
+	 * @return true if the model vectorizes sentences through {@link #getSentenceFeatureKeys(String)}
+	 * @see #setFeatureKeys(boolean)
+	 */
+	public boolean usesFeatureKeys() {
+		return featureKeys;
+	}
+	/**
+	 * Attaches a cache of the features extracted from sentences, which avoids repeating feature extraction for
+	 * sentences that recur. Cached entries become stale whenever the model's {@link Vocabulary} is pruned.
+	 * @param featureCache the cache (<code>null</code> to stop caching)
+	 * @return this word model
+	 */
+	public WordModel setFeatureCache(FeatureCache featureCache) {
+		if(featureCache!=null && this.featureCache==null)
+			vocabulary.addRemapListener(remapListener);
+		else if(featureCache==null && this.featureCache!=null)
+			vocabulary.removeRemapListener(remapListener);
+		this.featureCache = featureCache;
+		return this;
+	}
+	/**
+	 * @return the attached feature cache or <code>null</code> if there is none
+	 */
+	public FeatureCache getFeatureCache() {
+		return featureCache;
+	}
+	/**
+	 * @return a unique id of the model, with which {@link FeatureCache} keys its entries
+	 */
+	long getCacheId() {
+		return cacheId;
+	}
 	/**
 	 * Adds additional dimensions to features if features not found for the sentence.
 	 * A number of trailing zeros (which may be added by future feature discoveries) may not be present
@@ -44,19 +141,153 @@ public abstract class WordModel {
 	 * @return an array of [0,1] representing the features discovered within the word model.
 	 */
 	public double[] getSentenceFeatureVector(String sentence) {
-		ArrayList<Integer> idsDiscovered = new ArrayList<Integer>();
-		for(String word : getSentenceFeatures(sentence)) {
-			Integer id = wordId.get(word);
-			if(id==null) {
-				wordId.put(word, id = wordId.size());
-				wordText.put(id, word);
-			}
-			idsDiscovered.add(id);
+		return getSentenceSparseFeatureVector(sentence).toDense(getCurrentFeatureVectorLength());
+	}
+	/**
+	 * Sparse version of {@link #getSentenceFeatureVector(String)}, which also adds newly found features to the model.
+	 * Features always have unit weights, even if the model weighs their occurrences.
+	 * @param sentence a given sentence
+	 * @return a vector whose non-zero components correspond to the sentence's features
+	 */
+	public SparseVector getSentenceSparseFeatureVector(String sentence) {
+		return vectorize(getCachedFeatureOccurrences(sentence), false, true);
+	}
+	/**
+	 * Similar to {@link #getSentenceSparseFeatureVector(String)}, but the weights of repeated features are summed
+	 * instead of being collapsed (e.g. a word occurring twice has value 2). Models that weigh the occurrences of their
+	 * features (e.g. {@link Skipgram} with decay) sum those weights instead. The obtained term frequencies can be
+	 * weighted through a {@link TermWeighting}.
+	 * @param sentence a given sentence
+	 * @return a vector of the term frequencies of the sentence's features
+	 */
+	public SparseVector getSentenceTermFrequencyVector(String sentence) {
+		return vectorize(getCachedFeatureOccurrences(sentence), true, true);
+	}
+	/**
+	 * Similar to {@link #getSentenceTermFrequencyVector(String)}, but can skip counting the sentence in the model's
+	 * {@link Vocabulary}. Newly found features are still added to the vocabulary, but its statistics are not affected
+	 * and its streaming cap cannot trigger pruning, e.g. when the same text is vectorized again after edits.
+	 * @param sentence a given sentence
+	 * @param countDocument false to leave the vocabulary's counts unchanged
+	 * @return a vector of the term frequencies of the sentence's features
+	 */
+	public SparseVector getSentenceTermFrequencyVector(String sentence, boolean countDocument) {
+		return vectorize(getCachedFeatureOccurrences(sentence), true, countDocument);
+	}
+	/**
+	 * Similar to {@link #getSentenceSparseFeatureVector(String)}, but only looks up the sentence's features in the
+	 * model's {@link Vocabulary}, which is left unchanged. Features that the vocabulary does not contain are omitted,
+	 * since they cannot match any previously vectorized sentence (e.g. when vectorizing queries against a corpus).
+	 * @param sentence a given sentence
+	 * @return a vector whose non-zero components correspond to the sentence's known features
+	 */
+	public SparseVector getSentenceKnownFeatureVector(String sentence) {
+		FeatureOccurrences occurrences;
+		lookupOnly = true;
+		try {
+			occurrences = getSentenceFeatureOccurrences(sentence);//not cached, since the ids of unknown features are omitted
+		}
+		finally {
+			lookupOnly = false;
+		}
+		int[] featureIds = new int[occurrences.ids.length];
+		int count = 0;
+		for(int id : occurrences.ids)
+			if(id!=-1)
+				featureIds[count++] = id;
+		return SparseVector.fromFeatureIds(Arrays.copyOf(featureIds, count), null);
+	}
+	/**
+	 * Occurrences of features within a sentence, as obtained by {@link WordModel#getSentenceFeatureOccurrences(String)}.
+	 */
+	protected static class FeatureOccurrences {
+		protected final int[] ids;
+		protected final double[] weights;
+		/**
+		 * @param ids the ids of occurring features (possibly repeated)
+		 * @param weights the weight of each occurrence in term frequency vectors (<code>null</code> for unit weights)
+		 */
+		protected FeatureOccurrences(int[] ids, double[] weights) {
+			this.ids = ids;
+			this.weights = weights;
 		}
-		double[] vector = new double[wordId.size()];//initializes for zeros
-		for(int id : idsDiscovered)
-			vector[id] = 1;
-		return vector;
+	}
+	/**
+	 * Discovers the ids of a sentence's features, adding newly found features to the vocabulary.
+	 * Models that weigh their features differently override this.
+	 * @param sentence a given sentence
+	 * @return the occurrences of the sentence's features
+	 */
+	protected FeatureOccurrences getSentenceFeatureOccurrences(String sentence) {
+		if(featureKeys)
+			return new FeatureOccurrences(getFeatureIds(getSentenceFeatureKeys(sentence)), null);
+		return new FeatureOccurrences(getFeatureIds(getSentenceFeatures(sentence)), null);
+	}
+	private FeatureOccurrences getCachedFeatureOccurrences(String sentence) {
+		FeatureCache featureCache = this.featureCache;
+		if(featureCache==null)
+			return getSentenceFeatureOccurrences(sentence);
+		long configuration = ((long)vocabularyGeneration << 1) | (featureKeys?1:0);
+		return featureCache.get(this, configuration, sentence, () -> getSentenceFeatureOccurrences(sentence));
+	}
+	/**
+	 * Creates the vector of a sentence's features and, if needed, counts them in the model's {@link Vocabulary}.
+	 * Features removed by the vocabulary's streaming cap are omitted.
+	 */
+	private SparseVector vectorize(FeatureOccurrences occurrences, boolean sumRepeated, boolean countDocument) {
+		int[] featureIds = occurrences.ids;
+		double[] weights = occurrences.weights;
+		int[] remap = countDocument?vocabulary.countDocument(featureIds):null;
+		if(remap!=null) {
+			featureIds = featureIds.clone();//occurrences may be cached
+			if(weights!=null)
+				weights = weights.clone();
+			int count = 0;
+			for(int i=0;i<featureIds.length;i++)
+				if(remap[featureIds[i]]!=-1) {
+					if(weights!=null)
+						weights[count] = weights[i];
+					featureIds[count++] = remap[featureIds[i]];
+				}
+			featureIds = Arrays.copyOf(featureIds, count);
+			if(weights!=null)
+				weights = Arrays.copyOf(weights, count);
+		}
+		if(sumRepeated)
+			return SparseVector.fromFeatureCounts(featureIds, weights);
+		return SparseVector.fromFeatureIds(featureIds, null);
+	}
+	/**
+	 * @param features features obtained through {@link #getSentenceFeatures(String)}
+	 * @return the vector dimension of each feature, adding unknown features to the model
+	 * (-1 for unknown features while looking up through {@link #getSentenceKnownFeatureVector(String)})
+	 */
+	final protected int[] getFeatureIds(String[] features) {
+		int[] ids = new int[features.length];
+		for(int i=0;i<features.length;i++)
+			ids[i] = lookupOnly?vocabulary.getId(features[i]):vocabulary.add(features[i]);
+		return ids;
+	}
+	/**
+	 * @param keys feature keys obtained through {@link #getSentenceFeatureKeys(String)}
+	 * @return the vector dimension of each key, adding unknown keys to the model
+	 * (-1 for unknown keys while looking up through {@link #getSentenceKnownFeatureVector(String)})
+	 */
+	final protected int[] getFeatureIds(long[] keys) {
+		if(keys.length!=0 && !lookupOnly && !hasPortableFeatureKeys())
+			vocabulary.markLocalKeys();
+		int[] ids = new int[keys.length];
+		for(int i=0;i<keys.length;i++)
+			ids[i] = lookupOnly?vocabulary.getId(keys[i]):vocabulary.add(keys[i]);
+		return ids;
+	}
+	/**
+	 * @return true if the model's feature keys identify the same features for any model instance (e.g. content hashes),
+	 * false if they depend on the model's own word ids
+	 * @see Vocabulary#merge(Vocabulary...)
+	 */
+	protected boolean hasPortableFeatureKeys() {
+		return false;
 	}
 	/**
 	 * Generates a single string which contains every word corresponding to non-zero components of the designated vector.
@@ -66,15 +297,41 @@ public abstract class WordModel {
 	public String convertVectorToFeatureSentence(double[] vector) {
 		StringBuilder ret = new StringBuilder();
 		for(int i=0;i<vector.length;i++)
-			if(vector[i]!=0)
-				ret.append(wordText.get(i)).append(" ");
+			if(vector[i]!=0) {
+				if(featureKeys)
+					ret.append(getKeyText(vocabulary.getKey(i)));
+				else
+					ret.append(vocabulary.getText(i));
+				ret.append(" ");
+			}
 		return ret.toString().trim();
 	}
+	/**
+	 * @param key a feature key obtained through {@link #getSentenceFeatureKeys(String)}
+	 * @return the text of the feature, which models with their own keys should override
+	 */
+	protected String getKeyText(long key) {
+		StringBuilder builder = new StringBuilder();
+		appendKeyText(builder, key);
+		return builder.toString();
+	}
+	private void appendKeyText(StringBuilder builder, long key) {
+		if(key<0) {
+			int[] gram = hashedGrams.get(hashedGramIndex.get(key));
+			builder.append(unigramText.get(gram[0]));
+			for(int i=1;i<gram.length;i++)
+				builder.append(" ").append(unigramText.get(gram[i]));
+		}
+		else if((key>>>32)!=0)
+			builder.append(unigramText.get((int)(key>>>32)-1)).append(" ").append(unigramText.get((int)key));
+		else
+			builder.append(unigramText.get((int)key));
+	}
 	/**
 	 * @return the length of the feature vector
 	 */
 	public int getCurrentFeatureVectorLength() {
-		return wordId.size();
+		return vocabulary.size();
 	}
 	
 	/**
@@ -84,6 +341,104 @@ public abstract class WordModel {
 	 */
 	public abstract String[] getSentenceFeatures(String sentence);
 	
+	/**
+	 * Obtains the same features as {@link #getSentenceFeatures(String)} in the form of <code>long</code> keys.
+	 * By default, each feature is treated as a single word. N-gram models override this to pack word ids
+	 * instead of joining words into new strings.
+	 * @param sentence a given sentence
+	 * @return a key for each feature that comprises the sentence
+	 * @see #setFeatureKeys(boolean)
+	 */
+	public long[] getSentenceFeatureKeys(String sentence) {
+		String[] features = getSentenceFeatures(sentence);
+		long[] keys = new long[features.length];
+		for(int i=0;i<features.length;i++)
+			keys[i] = getWordId(features[i]);
+		return keys;
+	}
+	/**
+	 * @param word a given (stemmed) word
+	 * @return a unique non-negative id of the word, which is used to construct feature keys
+	 */
+	final protected int getWordId(String word) {
+		Integer id = unigramId.get(word);
+		if(id==null) {
+			if(lookupOnly)
+				return unigramText.size();//a new id is not part of any known key
+			unigramId.put(word, id = unigramText.size());
+			unigramText.add(word);
+		}
+		return id;
+	}
+	final protected int[] getWordIds(String[] words) {
+		int[] ids = new int[words.length];
+		for(int i=0;i<words.length;i++)
+			ids[i] = getWordId(words[i]);
+		return ids;
+	}
+	/**
+	 * Single words are keyed by their id, pairs of words are packed into the two halves of the key and longer grams
+	 * are hashed into negative keys (their words are remembered to be able to materialize their text).
+	 * @param wordIds word ids obtained through {@link #getWordId(String)}
+	 * @param from the position of the first gram word
+	 * @param n the number of gram words
+	 * @return the key of the gram
+	 */
+	final protected long getGramKey(int[] wordIds, int from, int n) {
+		if(n==1)
+			return wordIds[from];
+		if(n==2)
+			return getPairKey(wordIds[from], wordIds[from+1]);
+		long hash = 0;
+		for(int j=0;j<n;j++)
+			hash = hash*GRAM_HASH_MULTIPLIER + wordIds[from+j] + 1;
+		return registerHashedGram(hash, wordIds, from, n);
+	}
+	final protected static long getPairKey(int wordId1, int wordId2) {
+		return ((long)(wordId1+1) << 32) | wordId2;
+	}
+	/**
+	 * Keys every group of N consecutive words. Grams of more than two words are obtained through a rolling hash,
+	 * so that each key is computed in constant time.
+	 * @param wordIds word ids obtained through {@link #getWordId(String)}
+	 * @param N the number of words in each gram
+	 * @return the keys of all grams
+	 */
+	final protected long[] getGramKeys(int[] wordIds, int N) {
+		if(wordIds.length<N)
+			return new long[0];
+		long[] keys = new long[wordIds.length-N+1];
+		if(N<=2) {
+			for(int i=0;i<keys.length;i++)
+				keys[i] = getGramKey(wordIds, i, N);
+			return keys;
+		}
+		long leadingPower = 1;
+		for(int j=1;j<N;j++)
+			leadingPower *= GRAM_HASH_MULTIPLIER;
+		long hash = 0;
+		for(int j=0;j<N;j++)
+			hash = hash*GRAM_HASH_MULTIPLIER + wordIds[j] + 1;
+		keys[0] = registerHashedGram(hash, wordIds, 0, N);
+		for(int i=1;i<keys.length;i++) {
+			hash = (hash - (wordIds[i-1]+1)*leadingPower)*GRAM_HASH_MULTIPLIER + wordIds[i+N-1] + 1;
+			keys[i] = registerHashedGram(hash, wordIds, i, N);
+		}
+		return keys;
+	}
+	private long registerHashedGram(long hash, int[] wordIds, int from, int n) {
+		hash += n*0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		long key = hash | Long.MIN_VALUE;
+		if(!lookupOnly && !hashedGramIndex.containsKey(key)) {
+			hashedGramIndex.put(key, hashedGrams.size());
+			hashedGrams.add(Arrays.copyOfRange(wordIds, from, from+n));
+		}
+		return key;
+	}
+	
 	/**
 	 * Implements a string equality comparison between (possibly <code>null</code>) words.
 	 * Some word models may require a more sophisticated comparison.
@@ -101,75 +456,120 @@ public abstract class WordModel {
 	 * Splits into sentences without splitting any of the common parenthesis or brackets (i.e. (), [], {})
 	 * @param text
 	 * @return a table of found sentences
+	 * @see SentenceSegmenter
 	 */
 	public static String[] getTextSentences(String text) {
-		String[] allSentences = text.split("(\\n|(\\.\\s+($(|\\n|\\s+(?=[A-Z0-9])))))");
+		Events.SentenceSplit event = new Events.SentenceSplit();
+		event.begin();
 		ArrayList<String> sentences = new ArrayList<String>();
-		String currentString = "";
-		int accumulation = 0;
-		for(String sentence : allSentences) {
-			int localAccumulation = countOccurrences(sentence, '(')+countOccurrences(sentence, '{')+countOccurrences(sentence, '[')
-									-countOccurrences(sentence, ')')-countOccurrences(sentence, '}')-countOccurrences(sentence, ']');
-			accumulation += localAccumulation;
-			if(accumulation>0) 
-				currentString += sentence+" ";
-			else {
-				currentString += sentence;
-				sentences.add(currentString);
-				currentString = "";
-			}
-		}
-		if(!currentString.isEmpty()) {
-			sentences.add(currentString);
+		SentenceSegmenter segmenter = new SentenceSegmenter(text);
+		while(segmenter.next())
+			sentences.add(segmenter.getSentence());
+		event.end();
+		if(event.shouldCommit()) {
+			event.textLength = text.length();
+			event.sentences = sentences.size();
+			event.parallelism = 1;
+			event.commit();
 		}
 		return (String[])sentences.toArray(new String[sentences.size()]);
 	}
-	private static int countOccurrences(String haystack, char needle)
-	{
-	    int count = 0;
-	    for (int i=0; i < haystack.length(); i++)
-	        if (haystack.charAt(i) == needle)
-	             count++;
-	    return count;
+	/**
+	 * Parallel version of {@link #getTextSentences(String)}, which yields the same sentences for very large texts.
+	 * @param text
+	 * @param parallelism the number of text chunks to scan in parallel
+	 * @return a table of found sentences
+	 * @see SentenceSegmenter#split(CharSequence, int)
+	 */
+	public static String[] getTextSentences(String text, int parallelism) {
+		Events.SentenceSplit event = new Events.SentenceSplit();
+		event.begin();
+		String[] sentences = SentenceSegmenter.split(text, parallelism);
+		event.end();
+		if(event.shouldCommit()) {
+			event.textLength = text.length();
+			event.sentences = sentences.length;
+			event.parallelism = parallelism;
+			event.commit();
+		}
+		return sentences;
 	}
 	final protected static String prepareAcronyms(String sentence) {
-		char[] s = sentence.toCharArray();
 		char[] sPrepared = sentence.toCharArray();
-		for(int i=0;i<s.length;i++)
-			if((i==0||!Character.isAlphabetic(s[i-1])||Character.isUpperCase(s[i-1])) && (i+1>=s.length||Character.isUpperCase(s[i+1])||!Character.isAlphabetic(s[i+1])||i==s.length-1) && Character.isUpperCase(s[i]))
-				sPrepared[i] = Character.toLowerCase(s[i]);
+		for(int i=0;i<sPrepared.length;i++)
+			if(isAcronymLetter(sentence, i))
+				sPrepared[i] = Character.toLowerCase(sentence.charAt(i));
 		return new String(sPrepared);
 	}
-	final protected String[] splitStemSentenceWords(String sentence) {
-		sentence = prepareAcronyms(sentence);
-		String[] allWords = wordPattern.split(purePattern.matcher(sentence).replaceAll(" "));//sentence.split("(?=\\p{Lu})|(\\_|\\,|\\.|\\s|\\n|\\#|\\\"|\\{|\\}|\\@|\\(|\\)|\\;|\\-|\\:|\\*|\\\\|\\/)+");
-		ArrayList<String> words = new ArrayList<String>();
-		for(String word : allWords)
-			if(!word.isEmpty()) {
-				String w = stemmer.stem(word);
-				if(w!=null)
-					words.add(w);
-			}
-		return (String[])words.toArray(new String[words.size()]);
+	private static boolean isAcronymLetter(CharSequence s, int i) {
+		return Character.isUpperCase(s.charAt(i))
+				&& (i==0||!Character.isAlphabetic(s.charAt(i-1))||Character.isUpperCase(s.charAt(i-1)))
+				&& (i+1>=s.length()||Character.isUpperCase(s.charAt(i+1))||!Character.isAlphabetic(s.charAt(i+1)));
 	}
-	final protected String[] splitStemSentenceWordsWithoutPreparation(String sentence) {
-		String[] allWords = wordPattern.split(purePattern.matcher(sentence).replaceAll(" "));//sentence.split("(?=\\p{Lu})|(\\_|\\,|\\.|\\s|\\n|\\#|\\\"|\\{|\\}|\\@|\\(|\\)|\\;|\\-|\\:|\\*|\\\\|\\/)+");
+	/**
+	 * Splits a sentence into words in a single pass, which yields the same words as splitting through
+	 * {@link #wordPattern} after removing {@link #purePattern} characters, but without creating intermediate copies
+	 * of the sentence.
+	 * @param sentence a given sentence
+	 * @param prepareAcronyms whether to apply {@link #prepareAcronyms(String)} first
+	 * @return the non-empty words of the sentence
+	 */
+	private static ArrayList<String> splitWords(CharSequence sentence, boolean prepareAcronyms) {
+		Events.Tokenization event = new Events.Tokenization();
+		event.begin();
 		ArrayList<String> words = new ArrayList<String>();
-		for(String word : allWords)
-			if(!word.isEmpty()) {
-				String w = stemmer.stem(word);
-				if(w!=null)
-					words.add(w);
+		int length = sentence.length();
+		char[] word = new char[length];
+		int wordLength = 0;
+		for(int i=0;i<length;i++) {
+			char c = sentence.charAt(i);
+			if(prepareAcronyms && isAcronymLetter(sentence, i))
+				c = Character.toLowerCase(c);
+			boolean upperCase = c>='A' && c<='Z';
+			boolean textual = upperCase || (c>='a' && c<='z') || (c>='0' && c<='9');
+			if(wordLength!=0 && (upperCase || !textual)) {
+				words.add(new String(word, 0, wordLength));
+				wordLength = 0;
 			}
-		return (String[])words.toArray(new String[words.size()]);
+			if(textual)
+				word[wordLength++] = c;
+		}
+		if(wordLength!=0)
+			words.add(new String(word, 0, wordLength));
+		event.end();
+		if(event.shouldCommit()) {
+			event.sentenceLength = length;
+			event.tokens = words.size();
+			event.commit();
+		}
+		return words;
 	}
-	final protected static String[] splitSentenceWords(String sentence) {
-		sentence = prepareAcronyms(sentence);
-		String[] allWords = wordPattern.split(purePattern.matcher(sentence).replaceAll(" "));//.split("(?=\\p{Lu})|(\\_|\\,|\\.|\\s|\\n|\\#|\\\"|\\{|\\}|\\@|\\(|\\)|\\;|\\-|\\:|\\*|\\\\|\\/)+");
-		ArrayList<String> words = new ArrayList<String>();
-		for(String word : allWords)
-			if(word.length()>=1)
-				words.add(word.toLowerCase());
+	private String[] stemWords(ArrayList<String> allWords) {
+		Events.Stemming event = new Events.Stemming();
+		event.begin();
+		String[] stems = stemmer.stemAll(allWords.toArray(new String[allWords.size()]));
+		event.end();
+		if(event.shouldCommit()) {
+			event.stemmer = stemmer.getName();
+			event.tokens = stems.length;
+			event.commit();
+		}
+		int count = 0;
+		for(String w : stems)
+			if(w!=null)
+				stems[count++] = w;
+		return count==stems.length?stems:Arrays.copyOf(stems, count);
+	}
+	final protected String[] splitStemSentenceWords(CharSequence sentence) {
+		return stemWords(splitWords(sentence, true));
+	}
+	final protected String[] splitStemSentenceWordsWithoutPreparation(CharSequence sentence) {
+		return stemWords(splitWords(sentence, false));
+	}
+	final protected static String[] splitSentenceWords(CharSequence sentence) {
+		ArrayList<String> words = splitWords(sentence, true);
+		for(int i=0;i<words.size();i++)
+			words.set(i, words.get(i).toLowerCase());
 		return (String[])words.toArray(new String[words.size()]);
 	}
 	final protected static String[] splitSentencePredicates(String sentence) {
@@ -184,16 +584,10 @@ public abstract class WordModel {
 		return  stemmer.stem(word);
 	}
 	final protected String[] stem(String[] words) {
-		String[] stemmed = new String[words.length];
-		for(int i=0;i<words.length;i++)
-			stemmed[i] =  stemmer.stem(words[i]);
-		return stemmed;
+		return stemmer.stemAll(words);
 	}
 	final protected String[] stem(String[] words, Stemmer stemmer) {
-		String[] stemmed = new String[words.length];
-		for(int i=0;i<words.length;i++)
-			stemmed[i] = stemmer.stem(words[i]);
-		return stemmed;
+		return stemmer.stemAll(words);
 	}
 	public static String mergeToSentence(String[] words) {
 		if(words.length==0)
@@ -211,11 +605,12 @@ public abstract class WordModel {
 	 * @author Emmanouil Krasanakis
 	 */
 	public static class BagOfWordNet extends WordModel {
+		private static final POS[] expandedPartsOfSpeech = {POS.VERB, POS.ADJECTIVE, POS.ADVERB, POS.NOUN};
 		private Dictionary dictionary;
 		public BagOfWordNet(Stemmer stemmer) {
 			super(stemmer);
 		}
-		public String[] getSentenceFeatures(String sentence) {
+		private void loadDictionary() {
 			if(dictionary==null) {
 				try {
 					dictionary = Dictionary.getDefaultResourceInstance();
@@ -224,59 +619,66 @@ public abstract class WordModel {
 					e.printStackTrace();
 				}
 			}
+		}
+		public String[] getSentenceFeatures(String sentence) {
+			Events.WordNetExpansion event = new Events.WordNetExpansion();
+			event.begin();
+			int words = 0;
+			int lookups = 0;
+			loadDictionary();
 			ArrayList<String> ret = new ArrayList<String>();
 			try{
 				for(String word : splitSentenceWords(sentence)) {
+					words++;
 					ret.add(word);//may yield duplicate entries
-					IndexWord indexWord;
-					PointerTargetNodeList hypernyms;
-					indexWord = dictionary.lookupIndexWord(POS.VERB, word);
-					hypernyms = (indexWord!=null && indexWord.getSenses()!=null && indexWord.getSenses().size()>0)?PointerUtils.getDirectHypernyms(indexWord.getSenses().get(0)):null;
-					if(hypernyms!=null && hypernyms.size()>0)
-						for(int i=0;i<hypernyms.get(0).getSynset().getWords().size();i++)//get synonym set
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(hypernyms.get(0).getSynset().getWords().get(i).getLemma())))
-								ret.add(subword);
-					if(indexWord!=null && indexWord.getSenses().size()!=0 &&  indexWord.getSenses().size()!=0)
-						for(int i=0;i<indexWord.getSenses().get(0).getWords().size();i++)
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(indexWord.getSenses().get(0).getWords().get(i).getLemma())))
-								ret.add(subword);
-					indexWord = dictionary.lookupIndexWord(POS.ADJECTIVE, word);
-					hypernyms = (indexWord!=null && indexWord.getSenses()!=null && indexWord.getSenses().size()>0)?PointerUtils.getDirectHypernyms(indexWord.getSenses().get(0)):null;
-					if(hypernyms!=null && hypernyms.size()>0)
-						for(int i=0;i<hypernyms.get(0).getSynset().getWords().size();i++)//get synonym set
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(hypernyms.get(0).getSynset().getWords().get(i).getLemma())))
-								ret.add(subword);
-					if(indexWord!=null && indexWord.getSenses().size()!=0 &&  indexWord.getSenses().size()!=0)
-						for(int i=0;i<indexWord.getSenses().get(0).getWords().size();i++)
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(indexWord.getSenses().get(0).getWords().get(i).getLemma())))
-								ret.add(subword);
-					indexWord = dictionary.lookupIndexWord(POS.ADVERB, word);
-					hypernyms = (indexWord!=null && indexWord.getSenses()!=null && indexWord.getSenses().size()>0)?PointerUtils.getDirectHypernyms(indexWord.getSenses().get(0)):null;
-					if(hypernyms!=null && hypernyms.size()>0)
-						for(int i=0;i<hypernyms.get(0).getSynset().getWords().size();i++)//get synonym set
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(hypernyms.get(0).getSynset().getWords().get(i).getLemma())))
-								ret.add(subword);
-					if(indexWord!=null && indexWord.getSenses().size()!=0 &&  indexWord.getSenses().size()!=0)
-						for(int i=0;i<indexWord.getSenses().get(0).getWords().size();i++)
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(indexWord.getSenses().get(0).getWords().get(i).getLemma())))
-								ret.add(subword);
-					indexWord = dictionary.lookupIndexWord(POS.NOUN, word);
-					hypernyms = (indexWord!=null && indexWord.getSenses()!=null && indexWord.getSenses().size()>0)?PointerUtils.getDirectHypernyms(indexWord.getSenses().get(0)):null;
-					if(hypernyms!=null && hypernyms.size()>0)
-						for(int i=0;i<hypernyms.get(0).getSynset().getWords().size();i++)//get synonym set
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(hypernyms.get(0).getSynset().getWords().get(i).getLemma())))
-								ret.add(subword);
-					if(indexWord!=null && indexWord.getSenses().size()!=0 &&  indexWord.getSenses().size()!=0)
-						for(int i=0;i<indexWord.getSenses().get(0).getWords().size();i++)
-							for(String subword : (splitStemSentenceWordsWithoutPreparation(indexWord.getSenses().get(0).getWords().get(i).getLemma())))
-								ret.add(subword);
+					lookups += expandedPartsOfSpeech.length;
+					addRelatedStems(word, ret);
 				}
 			}
 			catch(Exception e) {
 				e.printStackTrace();
 			}
+			event.end();
+			if(event.shouldCommit()) {
+				event.words = words;
+				event.lookups = lookups;
+				event.features = ret.size();
+				event.commit();
+			}
+			return ret.toArray(new String[ret.size()]);
+		}
+		/**
+		 * Obtains the stemmed WordNet synonyms with which {@link #getSentenceFeatures(String)} expands a word.
+		 * @param word a lower-cased word
+		 * @return the stemmed lemmas of the direct hypernyms and the first sense of the word for each part of speech
+		 * (may contain duplicates)
+		 * @see TermSimilarityMatrix
+		 */
+		public String[] getRelatedStems(String word) {
+			loadDictionary();
+			ArrayList<String> ret = new ArrayList<String>();
+			try {
+				addRelatedStems(word, ret);
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+			}
 			return ret.toArray(new String[ret.size()]);
 		}
+		private void addRelatedStems(String word, ArrayList<String> ret) throws JWNLException {
+			for(POS pos : expandedPartsOfSpeech) {
+				IndexWord indexWord = dictionary.lookupIndexWord(pos, word);
+				PointerTargetNodeList hypernyms = (indexWord!=null && indexWord.getSenses()!=null && indexWord.getSenses().size()>0)?PointerUtils.getDirectHypernyms(indexWord.getSenses().get(0)):null;
+				if(hypernyms!=null && hypernyms.size()>0)
+					for(int i=0;i<hypernyms.get(0).getSynset().getWords().size();i++)//get synonym set
+						for(String subword : (splitStemSentenceWordsWithoutPreparation(hypernyms.get(0).getSynset().getWords().get(i).getLemma())))
+							ret.add(subword);
+				if(indexWord!=null && indexWord.getSenses().size()!=0)
+					for(int i=0;i<indexWord.getSenses().get(0).getWords().size();i++)
+						for(String subword : (splitStemSentenceWordsWithoutPreparation(indexWord.getSenses().get(0).getWords().get(i).getLemma())))
+							ret.add(subword);
+			}
+		}
 	}
 	/**
 	 * Splits into words and stems them.
@@ -303,6 +705,10 @@ public abstract class WordModel {
 			super(stemmer);
 			this.N = N;
 		}
+		@Override
+		public String getName() {
+			return super.getName()+"("+N+")";
+		}
 		protected static String[] getGrams(String[] words, int N) {
 			String[] grams = new String[words.length-N+1];
 			for(int i=0;i<grams.length;i++) {
@@ -329,6 +735,16 @@ public abstract class WordModel {
 			}
 			return getGrams(words, N);
 		}
+		@Override
+		public long[] getSentenceFeatureKeys(String sentence) {
+			int[] ids = getWordIds(splitStemSentenceWords(sentence));
+			if(ids.length<N) {
+				if(ids.length==0)
+					return new long[0];
+				return new long[]{getGramKey(ids, 0, ids.length)};
+			}
+			return getGramKeys(ids, N);
+		}
 	}
 	/**
 	 * Combines every {@link NGram} up to the given N (e.g. for N=3, it includes 1-Grams, 2-Gram and 3-Grams as features).
@@ -341,6 +757,10 @@ public abstract class WordModel {
 			this.N = N;
 		}
 		@Override
+		public String getName() {
+			return super.getName()+"("+N+")";
+		}
+		@Override
 		public String[] getSentenceFeatures(String sentence) {
 			ArrayList<String> words = new ArrayList<String>();
 			for(int n=1;n<=N;n++) {
@@ -353,6 +773,25 @@ public abstract class WordModel {
 				grams[i] = words.get(i);
 			return grams;
 		}
+		@Override
+		public long[] getSentenceFeatureKeys(String sentence) {
+			int[] ids = getWordIds(splitStemSentenceWords(sentence));
+			if(ids.length==0)
+				return new long[0];
+			long[][] gramKeys = new long[N][];
+			int count = 0;
+			for(int n=1;n<=N;n++) {
+				gramKeys[n-1] = ids.length<n?new long[]{getGramKey(ids, 0, ids.length)}:getGramKeys(ids, n);
+				count += gramKeys[n-1].length;
+			}
+			long[] keys = new long[count];
+			count = 0;
+			for(long[] nKeys : gramKeys) {
+				System.arraycopy(nKeys, 0, keys, count, nKeys.length);
+				count += nKeys.length;
+			}
+			return keys;
+		}
 	} 
 	/**
 	 * Generates bigrams by grouping every pair of consecutive words
@@ -376,29 +815,216 @@ public abstract class WordModel {
 				grams[i] = words[i]+" "+words[i+1];
 			return grams;
 		}
+		@Override
+		public long[] getSentenceFeatureKeys(String sentence) {
+			return getGramKeys(getWordIds(splitStemSentenceWords(sentence)), 2);
+		}
 	}
 	/**
 	 * Generates bigrams by grouping every pair of words within a window.
+	 * Pairs can optionally be weighted by a factor that decays with the distance between their words, which applies to
+	 * term frequency vectors, whereas feature vectors remain binary.
 	 * @author Emmanouil Krasanakis
 	 */
 	public static class Skipgram extends WordModel {
 		private int window;
+		private double decay;
 		public Skipgram(Stemmer stemmer) {
 			this(stemmer, 5);
 		}
 		public Skipgram(Stemmer stemmer, int window) {
+			this(stemmer, window, 1);
+		}
+		/**
+		 * @param stemmer the stemmer applied on words
+		 * @param window the maximum distance between paired words
+		 * @param decay pairs of words at distance d have weight decay<sup>d-1</sup> in term frequency vectors (1 to count pairs)
+		 */
+		public Skipgram(Stemmer stemmer, int window, double decay) {
 			super(stemmer);
+			if(decay<=0 || decay>1)
+				throw new IllegalArgumentException("Skipgram decay should lie in the range (0,1]");
 			this.window = window;
+			this.decay = decay;
+		}
+		@Override
+		public String getName() {
+			return super.getName()+"("+window+", "+decay+")";
+		}
+		private int countPairs(int numberOfWords) {
+			int span = Math.max(0, Math.min(window, numberOfWords-1));
+			return span*numberOfWords - span*(span+1)/2;
 		}
 		public String[] getSentenceFeatures(String sentence) {
-			String[] words = splitStemSentenceWords(sentence);
-			if(words.length==0 || words.length*window-window*(window-1)/2<=0)
-				return new String[0];
-			String[] grams = new String[words.length*window-window*(window-1)/2];
+			return getPairs(splitStemSentenceWords(sentence));
+		}
+		private String[] getPairs(String[] words) {
+			String[] grams = new String[countPairs(words.length)];
+			int pos = 0;
 			for(int i=0;i<words.length-1;i++)
 				for(int j=0;j<window && i+j+1<words.length;j++)
-					grams[i*window+j] = words[i]+" "+words[i+j+1];
+					grams[pos++] = words[i]+" "+words[i+j+1];
 			return grams;
 		}
+		@Override
+		public long[] getSentenceFeatureKeys(String sentence) {
+			return getPairKeys(getWordIds(splitStemSentenceWords(sentence)));
+		}
+		private long[] getPairKeys(int[] ids) {
+			long[] keys = new long[countPairs(ids.length)];
+			int pos = 0;
+			for(int i=0;i<ids.length-1;i++)
+				for(int j=0;j<window && i+j+1<ids.length;j++)
+					keys[pos++] = getPairKey(ids[i], ids[i+j+1]);
+			return keys;
+		}
+		/**
+		 * @param numberOfWords the number of words in a sentence
+		 * @return the weights of the pairs obtained by {@link #getSentenceFeatures(String)} for that number of words
+		 */
+		public double[] getPairWeights(int numberOfWords) {
+			double[] distanceWeights = new double[window];
+			double weight = 1;
+			for(int j=0;j<window;j++) {
+				distanceWeights[j] = weight;
+				weight *= decay;
+			}
+			double[] weights = new double[countPairs(numberOfWords)];
+			int pos = 0;
+			for(int i=0;i<numberOfWords-1;i++)
+				for(int j=0;j<window && i+j+1<numberOfWords;j++)
+					weights[pos++] = distanceWeights[j];
+			return weights;
+		}
+		@Override
+		protected FeatureOccurrences getSentenceFeatureOccurrences(String sentence) {
+			if(decay==1)
+				return super.getSentenceFeatureOccurrences(sentence);
+			String[] words = splitStemSentenceWords(sentence);
+			int[] ids = usesFeatureKeys()?getFeatureIds(getPairKeys(getWordIds(words))):getFeatureIds(getPairs(words));
+			return new FeatureOccurrences(ids, getPairWeights(words.length));
+		}
+	}
+	/**
+	 * Generates the character n-grams of each stemmed word, where words are lowercased and surrounded by the boundary
+	 * characters &lt; and &gt; (e.g. the 3-grams of "get" are "&lt;ge", "get", "et&gt;"). Words shorter than the
+	 * smallest n-gram are kept whole. Character n-grams let misspelled or abbreviated words share features.
+	 * <br>
+	 * With feature keys, grams are keyed through a rolling hash over each word's characters, so that no gram strings
+	 * are created during vectorization (the text of each gram is only created the first time it is encountered).
+	 * @author Emmanouil Krasanakis
+	 */
+	public static class CharacterNGram extends WordModel {
+		private static final char WORD_START = '<';
+		private static final char WORD_END = '>';
+		private int minN;
+		private int maxN;
+		private LongIntHashMap gramIndex = new LongIntHashMap();
+		private ArrayList<String> gramText = new ArrayList<String>();
+		public CharacterNGram(Stemmer stemmer) {
+			this(3, 5, stemmer);
+		}
+		/**
+		 * @param minN the smallest number of characters in grams
+		 * @param maxN the largest number of characters in grams
+		 * @param stemmer the stemmer applied on words before splitting them into grams
+		 */
+		public CharacterNGram(int minN, int maxN, Stemmer stemmer) {
+			super(stemmer);
+			if(minN<1 || maxN<minN)
+				throw new IllegalArgumentException("Character n-gram sizes should satisfy 1<=minN<=maxN");
+			this.minN = minN;
+			this.maxN = maxN;
+		}
+		@Override
+		public String getName() {
+			return super.getName()+"("+minN+", "+maxN+")";
+		}
+		private static int pad(String word, char[] buffer) {
+			buffer[0] = WORD_START;
+			for(int i=0;i<word.length();i++)
+				buffer[i+1] = Character.toLowerCase(word.charAt(i));
+			buffer[word.length()+1] = WORD_END;
+			return word.length()+2;
+		}
+		private static int maxLength(String[] words) {
+			int length = 0;
+			for(String word : words)
+				length = Math.max(length, word.length()+2);
+			return length;
+		}
+		@Override
+		public String[] getSentenceFeatures(String sentence) {
+			String[] words = splitStemSentenceWords(sentence);
+			char[] buffer = new char[maxLength(words)];
+			ArrayList<String> grams = new ArrayList<String>();
+			for(String word : words) {
+				int length = pad(word, buffer);
+				if(length<minN)
+					grams.add(new String(buffer, 0, length));
+				for(int n=minN;n<=maxN && n<=length;n++)
+					for(int i=0;i+n<=length;i++)
+						grams.add(new String(buffer, i, n));
+			}
+			return grams.toArray(new String[grams.size()]);
+		}
+		@Override
+		public long[] getSentenceFeatureKeys(String sentence) {
+			String[] words = splitStemSentenceWords(sentence);
+			char[] buffer = new char[maxLength(words)];
+			long[] keys = new long[16];
+			int count = 0;
+			for(String word : words) {
+				int length = pad(word, buffer);
+				if(count+length*(maxN-minN+1)+1>keys.length)
+					keys = Arrays.copyOf(keys, Math.max(keys.length*2, count+length*(maxN-minN+1)+1));
+				if(length<minN)
+					keys[count++] = getCharacterGramKey(rollingHash(buffer, 0, length), length, buffer, 0);
+				for(int n=minN;n<=maxN && n<=length;n++) {
+					long leadingPower = 1;
+					for(int j=1;j<n;j++)
+						leadingPower *= GRAM_HASH_MULTIPLIER;
+					long hash = rollingHash(buffer, 0, n);
+					keys[count++] = getCharacterGramKey(hash, n, buffer, 0);
+					for(int i=1;i+n<=length;i++) {
+						hash = (hash - buffer[i-1]*leadingPower)*GRAM_HASH_MULTIPLIER + buffer[i+n-1];
+						keys[count++] = getCharacterGramKey(hash, n, buffer, i);
+					}
+				}
+			}
+			return Arrays.copyOf(keys, count);
+		}
+		private static long rollingHash(char[] buffer, int from, int n) {
+			long hash = 0;
+			for(int j=0;j<n;j++)
+				hash = hash*GRAM_HASH_MULTIPLIER + buffer[from+j];
+			return hash;
+		}
+		private long getCharacterGramKey(long hash, int n, char[] buffer, int from) {
+			hash += n*0x9E3779B97F4A7C15L;
+			hash ^= hash >>> 33;
+			hash *= 0xc4ceb9fe1a85ec53L;
+			hash ^= hash >>> 33;
+			if(!gramIndex.containsKey(hash)) {
+				gramIndex.put(hash, gramText.size());
+				gramText.add(new String(buffer, from, n));
+			}
+			return hash;
+		}
+		/**
+		 * Keys are hashes of gram contents, which can be merged across models.
+		 */
+		@Override
+		protected boolean hasPortableFeatureKeys() {
+			return true;
+		}
+		/**
+		 * @return the gram of the key or, for keys merged from other models, the hexadecimal form of the key
+		 */
+		@Override
+		protected String getKeyText(long key) {
+			int index = gramIndex.get(key);
+			return index==-1?Long.toHexString(key):gramText.get(index);
+		}
 	}
 }
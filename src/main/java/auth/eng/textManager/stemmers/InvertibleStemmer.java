@@ -19,23 +19,45 @@ public class InvertibleStemmer implements Stemmer {
 	public InvertibleStemmer(Stemmer baseStemmer) {
 		this.baseStemmer = baseStemmer;
 	}
+	/**
+	 * @return the stemmer whose stems are inverted
+	 */
+	public Stemmer getBaseStemmer() {
+		return baseStemmer;
+	}
 	public String stem(String word) {
 		String ret = baseStemmer.stem(word);
 		register(word, ret);
 		return ret;
 	}
+	public String[] stemAll(String[] words) {
+		String[] stems = baseStemmer.stemAll(words);
+		for(int i=0;i<words.length;i++)
+			register(words[i], stems[i]);
+		return stems;
+	}
 	/**
 	 * Registers an occuring stem-word pair.
 	 * @param word
 	 * @param stem
 	 */
 	protected void register(String word, String stem) {
+		register(word, stem, 1);
+	}
+	/**
+	 * Registers multiple occurrences of a stem-word pair.
+	 * @param word
+	 * @param stem
+	 * @param occurrences the number of occurrences
+	 * @see StreamingStemmer
+	 */
+	protected void register(String word, String stem, int occurrences) {
 		if(stem==null)
 			return;
 		HashMap<String, Integer> entries = inverseDictionary.get(stem);
 		if(entries==null)
 			inverseDictionary.put(stem, entries = new HashMap<String, Integer>());
-		entries.put(word, entries.getOrDefault(word, 0) + 1);
+		entries.put(word, entries.getOrDefault(word, 0) + occurrences);
 	}
 	/**
 	 * @param stem
@@ -856,13 +856,31 @@ public class LovinsStemmer implements Stemmer {
     }
   }
 
+  /**
+   * Stems a batch of words, stemming repeated words only once.
+   */
+  public String[] stemAll(String[] words) {
+
+    HashMap<String, String> stems = new HashMap<String, String>();
+    String[] ret = new String[words.length];
+    for (int i = 0; i < words.length; i++) {
+      String stem = stems.get(words[i]);
+      if (stem == null) {
+	stem = stem(words[i]);
+	stems.put(words[i], stem);
+      }
+      ret[i] = stem;
+    }
+    return ret;
+  }
+
   /**
    * Stems everything in the given string. String
    * is converted to lower case before stemming.
    */
   public String stemString(String str) {
 
-    StringBuffer result = new StringBuffer();
+    StringBuilder result = new StringBuilder();
     int start = -1;
     for (int j = 0; j < str.length(); j++) {
       char c = str.charAt(j);
@@ -890,31 +908,20 @@ public class LovinsStemmer implements Stemmer {
 
   /**
    * Stems text coming into stdin and writes it to stdout.
+   * Words are runs of ASCII letters, which are lower-cased before stemming, and input bytes are
+   * read as ISO-8859-1 characters. Further options of {@link StreamingStemmer#main(String[])} can
+   * be given (e.g. <code>--charset UTF-8</code>).
    */
   public static void main(String[] ops) {
 
-    LovinsStemmer ls = new LovinsStemmer();
-
-    try {
-      int num;
-      StringBuffer wordBuffer = new StringBuffer();
-      while ((num = System.in.read()) != -1) {
-	char c = (char)num;
-	if (((num >= (int)'A') && (num <= (int)'Z')) ||
-	    ((num >= (int)'a') && (num <= (int)'z'))) {
-	  wordBuffer.append(c);
-	} else {
-	  if (wordBuffer.length() > 0) {
-	    System.out.print(ls.stem(wordBuffer.toString().
-				     toLowerCase()));
-	    wordBuffer = new StringBuffer();
-	  }
-	  System.out.print(c);
-	}
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
+    String[] args = new String[ops.length + 5];
+    args[0] = "--stemmer";
+    args[1] = "lovins";
+    args[2] = "--ascii";
+    args[3] = "--charset";
+    args[4] = "ISO-8859-1";
+    System.arraycopy(ops, 0, args, 5, ops.length);
+    StreamingStemmer.main(args);
   }
 }
     
@@ -11,5 +11,8 @@ public class NoStemmer implements Stemmer {
 	public String stem(String word) {
 		return word;
 	}
+	public String[] stemAll(String[] words) {
+		return words.clone();
+	}
 
 }
@@ -0,0 +1,46 @@
+package auth.eng.textManager.stemmers;
+
+import java.util.stream.IntStream;
+
+/**
+ * Wrapper around a thread-safe base {@link Stemmer}, which forks large batches of {@link #stemAll(String[])} across
+ * cores. Stateful stemmers (e.g. {@link InvertibleStemmer}) should wrap this one instead of being wrapped by it.
+ * @author Emmanouil Krasanakis
+ */
+public class ParallelStemmer implements Stemmer {
+	private Stemmer baseStemmer;
+	private int batchSize;
+	
+	public ParallelStemmer(Stemmer baseStemmer) {
+		this(baseStemmer, 4096);
+	}
+	/**
+	 * @param baseStemmer a thread-safe stemmer
+	 * @param batchSize the number of words each core stems at a time (smaller batches are not forked)
+	 */
+	public ParallelStemmer(Stemmer baseStemmer, int batchSize) {
+		if(batchSize<=0)
+			throw new IllegalArgumentException("Batch size should be positive");
+		this.baseStemmer = baseStemmer;
+		this.batchSize = batchSize;
+	}
+	public String getName() {
+		return baseStemmer.getName();
+	}
+	public String stem(String word) {
+		return baseStemmer.stem(word);
+	}
+	public String[] stemAll(String[] words) {
+		if(words.length<=batchSize)
+			return baseStemmer.stemAll(words);
+		String[] stems = new String[words.length];
+		IntStream.range(0, (words.length+batchSize-1)/batchSize).parallel().forEach(batch -> {
+			int from = batch*batchSize;
+			int to = Math.min(words.length, from+batchSize);
+			String[] batchWords = new String[to-from];
+			System.arraycopy(words, from, batchWords, 0, batchWords.length);
+			System.arraycopy(baseStemmer.stemAll(batchWords), 0, stems, from, batchWords.length);
+		});
+		return stems;
+	}
+}
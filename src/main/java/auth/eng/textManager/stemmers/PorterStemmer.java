@@ -1,5 +1,7 @@
 package auth.eng.textManager.stemmers;
 
+import java.util.HashMap;
+
 /**
  * The Porter stemmer yields slightly inferior results compared to {@link IteratedLovinsStemmer} but gains a significant boost
  * in its calculation spped.
@@ -17,6 +19,25 @@ public class PorterStemmer implements Stemmer {
 			s.stem();
 			return s.toString();
 	  }
+	  /**
+	   * Stems a batch of words with a single working buffer, stemming repeated words only once.
+	   */
+	  public String[] stemAll(String[] words) {
+		    InternalPorterStemmer s = new InternalPorterStemmer();
+		    HashMap<String, String> stems = new HashMap<String, String>();
+		    String[] ret = new String[words.length];
+		    for(int i=0;i<words.length;i++) {
+		    	String stem = stems.get(words[i]);
+		    	if(stem==null) {
+		    		for(int j=0;j<words[i].length();j++)
+		    			s.add(words[i].charAt(j));
+		    		s.stem();
+		    		stems.put(words[i], stem = s.toString());
+		    	}
+		    	ret[i] = stem;
+		    }
+		    return ret;
+	  }
 	  /*
 
 	   Porter stemmer in Java. The original paper is in
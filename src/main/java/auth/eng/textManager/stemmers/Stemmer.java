@@ -15,4 +15,16 @@ public interface Stemmer {
 	 * @return the discovered stem
 	 */
 	public String stem(String word);
+	/**
+	 * Stems a batch of words, such as all the words of a sentence or corpus. Implementations may override this
+	 * to share work across the batch (e.g. by stemming repeated words only once).
+	 * @param words a batch of words
+	 * @return the stem of each word, as obtained by {@link #stem(String)}
+	 */
+	public default String[] stemAll(String[] words) {
+		String[] stems = new String[words.length];
+		for(int i=0;i<words.length;i++)
+			stems[i] = stem(words[i]);
+		return stems;
+	}
 }
@@ -1,5 +1,8 @@
 package auth.eng.textManager.stemmers;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashSet;
 
 /**
@@ -8,20 +11,86 @@ import java.util.HashSet;
  */
 public class StopwordRemove implements Stemmer{
 	private static String[] stopwords = {"a", "as", "able", "about", "above", "according", "accordingly", "across", "actually", "after", "afterwards", "again", "against", "aint", "all", "allow", "allows", "almost", "alone", "along", "already", "also", "although", "always", "am", "among", "amongst", "an", "and", "another", "any", "anybody", "anyhow", "anyone", "anything", "anyway", "anyways", "anywhere", "apart", "appear", "appreciate", "appropriate", "are", "arent", "around", "as", "aside", "ask", "asking", "associated", "at", "available", "away", "awfully", "be", "became", "because", "become", "becomes", "becoming", "been", "before", "beforehand", "behind", "being", "believe", "below", "beside", "besides", "best", "better", "between", "beyond", "both", "brief", "but", "by", "cmon", "cs", "came", "can", "cant", "cannot", "cant", "cause", "causes", "certain", "certainly", "changes", "clearly", "co", "com", "come", "comes", "concerning", "consequently", "consider", "considering", "contain", "containing", "contains", "corresponding", "could", "couldnt", "course", "currently", "definitely", "described", "despite", "did", "didnt", "different", "do", "does", "doesnt", "doing", "dont", "done", "down", "downwards", "during", "each", "edu", "eg", "eight", "either", "else", "elsewhere", "enough", "entirely", "especially", "et", "etc", "even", "ever", "every", "everybody", "everyone", "everything", "everywhere", "ex", "exactly", "example", "except", "far", "few", "ff", "fifth", "first", "five", "followed", "following", "follows", "for", "former", "formerly", "forth", "four", "from", "further", "furthermore", "get", "gets", "getting", "given", "gives", "go", "goes", "going", "gone", "got", "gotten", "greetings", "had", "hadnt", "happens", "hardly", "has", "hasnt", "have", "havent", "having", "he", "hes", "hello", "help", "hence", "her", "here", "heres", "hereafter", "hereby", "herein", "hereupon", "hers", "herself", "hi", "him", "himself", "his", "hither", "hopefully", "how", "howbeit", "however", "i", "id", "ill", "im", "ive", "ie", "if", "ignored", "immediate", "in", "inasmuch", "inc", "indeed", "indicate", "indicated", "indicates", "inner", "insofar", "instead", "into", "inward", "is", "isnt", "it", "itd", "itll", "its", "its", "itself", "just", "keep", "keeps", "kept", "know", "knows", "known", "last", "lately", "later", "latter", "latterly", "least", "less", "lest", "let", "lets", "like", "liked", "likely", "little", "look", "looking", "looks", "ltd", "mainly", "many", "may", "maybe", "me", "mean", "meanwhile", "merely", "might", "more", "moreover", "most", "mostly", "much", "must", "my", "myself", "name", "namely", "nd", "near", "nearly", "necessary", "need", "needs", "neither", "never", "nevertheless", "new", "next", "nine", "no", "nobody", "non", "none", "noone", "nor", "normally", "not", "nothing", "novel", "now", "nowhere", "obviously", "of", "off", "often", "oh", "ok", "okay", "old", "on", "once", "one", "ones", "only", "onto", "or", "other", "others", "otherwise", "ought", "our", "ours", "ourselves", "out", "outside", "over", "overall", "own", "particular", "particularly", "per", "perhaps", "placed", "please", "plus", "possible", "presumably", "probably", "provides", "que", "quite", "qv", "rather", "rd", "re", "really", "reasonably", "regarding", "regardless", "regards", "relatively", "respectively", "right", "said", "same", "saw", "say", "saying", "says", "second", "secondly", "see", "seeing", "seem", "seemed", "seeming", "seems", "seen", "self", "selves", "sensible", "sent", "serious", "seriously", "seven", "several", "shall", "she", "should", "shouldnt", "since", "six", "so", "some", "somebody", "somehow", "someone", "something", "sometime", "sometimes", "somewhat", "somewhere", "soon", "sorry", "specified", "specify", "specifying", "still", "sub", "such", "sup", "sure", "ts", "take", "taken", "tell", "tends", "th", "than", "thank", "thanks", "thanx", "that", "thats", "thats", "the", "their", "theirs", "them", "themselves", "then", "thence", "there", "theres", "thereafter", "thereby", "therefore", "therein", "theres", "thereupon", "these", "they", "theyd", "theyll", "theyre", "theyve", "think", "third", "this", "thorough", "thoroughly", "those", "though", "three", "through", "throughout", "thru", "thus", "to", "together", "too", "took", "toward", "towards", "tried", "tries", "truly", "try", "trying", "twice", "two", "un", "under", "unfortunately", "unless", "unlikely", "until", "unto", "up", "upon", "us", "use", "used", "useful", "uses", "using", "usually", "value", "various", "very", "via", "viz", "vs", "want", "wants", "was", "wasnt", "way", "we", "wed", "well", "were", "weve", "welcome", "well", "went", "were", "werent", "what", "whats", "whatever", "when", "whence", "whenever", "where", "wheres", "whereafter", "whereas", "whereby", "wherein", "whereupon", "wherever", "whether", "which", "while", "whither", "who", "whos", "whoever", "whole", "whom", "whose", "why", "will", "willing", "wish", "with", "within", "without", "wont", "wonder", "would", "would", "wouldnt", "yes", "yet", "you", "youd", "youll", "youre", "youve", "your", "yours", "yourself", "yourselves", "zero"};
+	private static final WordSet defaultStopwords = new WordSet(Arrays.asList(stopwords));
+	protected WordSet surfaceStopwords;
 	protected HashSet<String> stemmedStopwords = new HashSet<String>();
 	protected Stemmer baseStemmer;
 	public String getName() {
 		return "Stopwordless"+baseStemmer.getName();
     }
 	public StopwordRemove(Stemmer baseStemmer) {
+		this(baseStemmer, defaultStopwords);
+	}
+	/**
+	 * @param baseStemmer the stemmer applied on words that are not stopwords
+	 * @param stopwordFile a file with one stopword per line (loaded through {@link WordSet#load(Path)})
+	 * @throws IOException if the file cannot be read
+	 */
+	public StopwordRemove(Stemmer baseStemmer, Path stopwordFile) throws IOException {
+		this(baseStemmer, WordSet.load(stopwordFile));
+	}
+	/**
+	 * @param baseStemmer the stemmer applied on words that are not stopwords
+	 * @param stopwords the set of stopwords
+	 */
+	public StopwordRemove(Stemmer baseStemmer, WordSet stopwords) {
 		this.baseStemmer = baseStemmer;
-		for(String stopword : stopwords)
+		this.surfaceStopwords = stopwords;
+		for(String stopword : stopwords.toArray())
 			stemmedStopwords.add(baseStemmer.stem(stopword));
 	}
+	/**
+	 * The stem of the lower-cased word is used to check for stopwords and, if the word is already lower-cased, is
+	 * also returned, so that most words are stemmed only once.
+	 * @return the stem of the word or <code>null</code> for stopwords
+	 */
 	public String stem(String word) {
-		if(isStopword(word))
+		if(isSurfaceStopword(word))
 			return null;
-		return baseStemmer.stem(word);
+		String lowerCased = word.toLowerCase();
+		String stem = baseStemmer.stem(lowerCased);
+		if(stemmedStopwords.contains(stem))
+			return null;
+		return lowerCased.equals(word)?stem:baseStemmer.stem(word);//the base stemmer may keep the case of words
+	}
+	/**
+	 * Batch version of {@link #stem(String)}, which filters out stopwords before stemming the remaining words
+	 * through a batch of the base stemmer (and a second batch for the words that are not lower-cased).
+	 */
+	public String[] stemAll(String[] words) {
+		String[] stems = new String[words.length];
+		String[] lowerCased = new String[words.length];
+		int[] positions = new int[words.length];
+		int count = 0;
+		for(int i=0;i<words.length;i++)
+			if(!isSurfaceStopword(words[i])) {
+				positions[count] = i;
+				lowerCased[count++] = words[i].toLowerCase();
+			}
+		String[] baseStems = baseStemmer.stemAll(Arrays.copyOf(lowerCased, count));
+		String[] casedWords = new String[count];
+		int[] casedPositions = new int[count];
+		int casedCount = 0;
+		for(int i=0;i<count;i++)
+			if(!stemmedStopwords.contains(baseStems[i])) {
+				if(lowerCased[i].equals(words[positions[i]]))
+					stems[positions[i]] = baseStems[i];
+				else {
+					casedPositions[casedCount] = positions[i];
+					casedWords[casedCount++] = words[positions[i]];
+				}
+			}
+		String[] casedStems = baseStemmer.stemAll(Arrays.copyOf(casedWords, casedCount));
+		for(int i=0;i<casedCount;i++)
+			stems[casedPositions[i]] = casedStems[i];
+		return stems;
+	}
+	private boolean isSurfaceStopword(String word) {
+		if(word.isEmpty())
+			return true;
+		if(word.charAt(0) >= '0' && word.charAt(0) <= '9')
+			return true;
+		return surfaceStopwords.contains(word);
 	}
 	/**
 	 * Checks if a given word is a stopword (i.e. has the same stem as known stopwords or starts with number)
@@ -29,9 +98,7 @@ public class StopwordRemove implements Stemmer{
 	 * @return true if the given word is a stopword
 	 */
 	public boolean isStopword(String word) {
-		if(word.isEmpty())
-			return true;
-		if(word.charAt(0) >= '0' && word.charAt(0) <= '9')
+		if(isSurfaceStopword(word))
 			return true;
 		word = word.toLowerCase();
 		if(stemmedStopwords.contains(baseStemmer.stem(word)))
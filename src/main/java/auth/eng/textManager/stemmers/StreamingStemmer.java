@@ -0,0 +1,452 @@
+package auth.eng.textManager.stemmers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stems whole documents streamed through NIO channels, producing the same text as {@link LovinsStemmer#stemString(String)}
+ * would for any {@link Stemmer}: words are maximal runs of letters, digits and inner apostrophes, which are replaced by
+ * their stems, while all other characters are copied as-is. Words whose stem is <code>null</code> (e.g. the stopwords of
+ * {@link StopwordRemove}) are omitted.
+ * <br>
+ * Input is decoded in large blocks that are cut at word boundaries, so that blocks can be stemmed by multiple threads
+ * while their output is written in the original order. Stems are cached by the characters of their words, so that
+ * repeated words are neither converted to strings nor stemmed again. This requires that stemmers always return the same
+ * stem for the same word and, when multiple threads are used, that they are thread-safe. An outermost {@link InvertibleStemmer}
+ * is handled by stemming with its base stemmer and registering all stemmed occurrences to it.
+ * <br>
+ * Alternatively, {@link #setAsciiLetterWords(boolean)} tokenizes like the original {@link LovinsStemmer#main(String[])},
+ * where words are maximal runs of ASCII letters and are lower-cased before stemming.
+ * <pre>
+ * new StreamingStemmer(new StopwordRemove(new PorterStemmer())).stem(Paths.get("corpus.txt"), Paths.get("stemmed.txt"));
+ * </pre>
+ * @author Emmanouil Krasanakis
+ */
+public class StreamingStemmer {
+	private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+	private static final int CACHE_CAPACITY = 1 << 16;
+
+	private final Stemmer stemmer;
+	private final InvertibleStemmer invertibleStemmer;
+	private final Charset charset;
+	private final int blockSize;
+	private final int threads;
+	private final ArrayBlockingQueue<StemCache> caches;
+	private boolean asciiLetterWords = false;
+
+	public StreamingStemmer(Stemmer stemmer) {
+		this(stemmer, StandardCharsets.UTF_8, DEFAULT_BLOCK_SIZE, 1);
+	}
+	/**
+	 * @param stemmer the stemmer applied on words (it should be thread-safe if more than one thread is used)
+	 * @param charset the charset with which input is decoded and output is encoded
+	 * @param blockSize the number of characters stemmed at a time (blocks grow to fit longer words)
+	 * @param threads the number of threads that stem blocks in parallel
+	 */
+	public StreamingStemmer(Stemmer stemmer, Charset charset, int blockSize, int threads) {
+		if(blockSize<=0)
+			throw new IllegalArgumentException("Block size should be positive");
+		if(threads<=0)
+			throw new IllegalArgumentException("The number of threads should be positive");
+		if(stemmer instanceof InvertibleStemmer) {
+			this.invertibleStemmer = (InvertibleStemmer)stemmer;
+			this.stemmer = invertibleStemmer.getBaseStemmer();
+		}
+		else {
+			this.invertibleStemmer = null;
+			this.stemmer = stemmer;
+		}
+		this.charset = charset;
+		this.blockSize = blockSize;
+		this.threads = threads;
+		this.caches = new ArrayBlockingQueue<StemCache>(threads);
+		for(int i=0;i<threads;i++)
+			caches.add(new StemCache());
+	}
+
+	private static class Block {
+		private char[] input;
+		private int length = 0;
+		private char[] output;
+		private int outputLength = 0;
+		private Block(int size) {
+			input = new char[size];
+			output = new char[size+size/4];
+		}
+		private void append(char c) {
+			if(outputLength==output.length)
+				output = Arrays.copyOf(output, output.length*2);
+			output[outputLength++] = c;
+		}
+		private void append(char[] chars) {
+			if(outputLength+chars.length>output.length)
+				output = Arrays.copyOf(output, Math.max(output.length*2, outputLength+chars.length));
+			System.arraycopy(chars, 0, output, outputLength, chars.length);
+			outputLength += chars.length;
+		}
+	}
+
+	private static class Input {
+		private final ReadableByteChannel channel;
+		private final CharsetDecoder decoder;
+		private final ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		private boolean endOfChannel = false;
+		private boolean flushing = false;
+		private boolean finished = false;
+		private Input(ReadableByteChannel channel, Charset charset) {
+			this.channel = channel;
+			this.decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			bytes.flip();
+		}
+		/**
+		 * Decodes characters into the free space of a block, reading more bytes from the channel if needed.
+		 * @return true if the free space of the block cannot fit the next character
+		 */
+		private boolean read(Block block) throws IOException {
+			CharBuffer chars = CharBuffer.wrap(block.input, block.length, block.input.length-block.length);
+			if(!flushing) {
+				if(!endOfChannel) {
+					bytes.compact();
+					endOfChannel = channel.read(bytes)==-1;
+					bytes.flip();
+				}
+				CoderResult result = decoder.decode(bytes, chars, endOfChannel);
+				if(result.isError())
+					result.throwException();
+				block.length = chars.position();
+				if(result.isOverflow())
+					return true;
+				flushing = endOfChannel;
+			}
+			if(flushing)
+				finished = decoder.flush(chars).isUnderflow();
+			block.length = chars.position();
+			return flushing && !finished;
+		}
+	}
+
+	/**
+	 * Open addressing table from the characters of words to their stems, which also counts the occurrences of each word
+	 * since the last time the cache was flushed.
+	 */
+	private static class StemCache {
+		private final int[] table = new int[CACHE_CAPACITY*2];
+		private final int[] hashes = new int[CACHE_CAPACITY];
+		private final String[] words = new String[CACHE_CAPACITY];
+		private final String[] stems = new String[CACHE_CAPACITY];
+		private final char[][] stemChars = new char[CACHE_CAPACITY][];
+		private final int[] occurrences = new int[CACHE_CAPACITY];
+		private int size = 0;
+		private void clear() {
+			Arrays.fill(table, 0);
+			Arrays.fill(words, 0, size, null);
+			Arrays.fill(stems, 0, size, null);
+			Arrays.fill(stemChars, 0, size, null);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Switches to the tokenization of the original {@link LovinsStemmer#main(String[])}, where words are maximal runs of
+	 * ASCII letters (so that digits, apostrophes and other letters separate words) that are lower-cased before stemming.
+	 * @param asciiLetterWords true to tokenize words as runs of ASCII letters
+	 * @return this streaming stemmer
+	 */
+	public StreamingStemmer setAsciiLetterWords(boolean asciiLetterWords) {
+		this.asciiLetterWords = asciiLetterWords;
+		return this;
+	}
+	/**
+	 * Stems a file into another file.
+	 * @param input the file to stem
+	 * @param output the file in which to write the stemmed text (it is created or overwritten)
+	 * @throws IOException if either file cannot be accessed
+	 */
+	public void stem(Path input, Path output) throws IOException {
+		try(FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			stem(in, out);
+		}
+	}
+	/**
+	 * Reads all the text of an input channel and writes its stemmed version to an output channel. Neither channel is closed.
+	 * Malformed input is replaced with the charset's replacement character.
+	 * @param input the channel from which to read text
+	 * @param output the channel in which to write the stemmed text
+	 * @throws IOException if either channel fails
+	 */
+	public synchronized void stem(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+		Input in = new Input(input, charset);
+		CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer encoded = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		char[] carry = new char[0];
+		int carryLength = 0;
+		ExecutorService executor = threads==1?null:Executors.newFixedThreadPool(threads);
+		ArrayBlockingQueue<Block> blocks = new ArrayBlockingQueue<Block>(threads*2);
+		for(int i=0;i<threads*2;i++)
+			blocks.add(new Block(blockSize));
+		ArrayDeque<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+		try {
+			while(!in.finished) {
+				Block block = blocks.poll();
+				if(block==null) {
+					write(await(pending.poll()), encoder, encoded, output, blocks);
+					continue;
+				}
+				if(block.input.length<=carryLength)
+					block.input = new char[carryLength+blockSize];//the carried word has grown another block
+				System.arraycopy(carry, 0, block.input, 0, carryLength);
+				block.length = carryLength;
+				int from = block.length;
+				int cut;
+				while(true) {
+					while(block.length<block.input.length && !in.finished && !in.read(block));
+					cut = in.finished?block.length:findCut(block.input, from, block.length);
+					if(cut!=0 || in.finished)
+						break;
+					from = block.length;
+					block.input = Arrays.copyOf(block.input, block.input.length*2);//a word spans the whole block
+				}
+				if(carry.length<block.length-cut)
+					carry = new char[block.input.length];
+				carryLength = block.length-cut;
+				System.arraycopy(block.input, cut, carry, 0, carryLength);
+				block.length = cut;
+				if(executor==null) {
+					process(block);
+					write(block, encoder, encoded, output, blocks);
+				}
+				else {
+					final Block task = block;
+					pending.add(executor.submit(() -> {
+						process(task);
+						return task;
+					}));
+				}
+			}
+			while(!pending.isEmpty())
+				write(await(pending.poll()), encoder, encoded, output, blocks);
+			encoder.encode(CharBuffer.allocate(0), encoded, true);
+			while(encoder.flush(encoded)==CoderResult.OVERFLOW)
+				drain(encoded, output);
+			drain(encoded, output);
+		}
+		finally {
+			if(executor!=null)
+				executor.shutdownNow();
+			for(StemCache cache : caches)
+				flush(cache);
+		}
+	}
+	/**
+	 * @return the position after the last character in [from, to) that cannot belong to a word, or zero if there is none
+	 */
+	private static int findCut(char[] chars, int from, int to) {
+		for(int i=to-1;i>=from;i--)
+			if(!Character.isLetterOrDigit(chars[i]) && chars[i]!='\'' && !Character.isHighSurrogate(chars[i]))//surrogate pairs are not split
+				return i+1;
+		return 0;
+	}
+	private static Block await(Future<Block> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			if(e.getCause() instanceof Error)
+				throw (Error)e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+	private static void write(Block block, CharsetEncoder encoder, ByteBuffer encoded, WritableByteChannel output, ArrayBlockingQueue<Block> blocks) throws IOException {
+		CharBuffer chars = CharBuffer.wrap(block.output, 0, block.outputLength);
+		while(encoder.encode(chars, encoded, false)==CoderResult.OVERFLOW)
+			drain(encoded, output);
+		if(chars.hasRemaining())
+			throw new IOException("Cannot encode a trailing surrogate character");
+		blocks.add(block);
+	}
+	private static void drain(ByteBuffer encoded, WritableByteChannel output) throws IOException {
+		encoded.flip();
+		while(encoded.hasRemaining())
+			output.write(encoded);
+		encoded.clear();
+	}
+	private void process(Block block) {
+		StemCache cache = caches.poll();//there are as many caches as threads
+		try {
+			char[] input = block.input;
+			block.outputLength = 0;
+			int start = -1;
+			for(int i=0;i<block.length;i++) {
+				char c = input[i];
+				if(asciiLetterWords?(c>='A' && c<='Z') || (c>='a' && c<='z'):Character.isLetterOrDigit(c)) {
+					if(start==-1)
+						start = i;
+				}
+				else if(c=='\'' && !asciiLetterWords) {
+					if(start==-1)
+						block.append(c);
+				}
+				else {
+					if(start!=-1) {
+						appendStem(block, cache, start, i);
+						start = -1;
+					}
+					block.append(c);
+				}
+			}
+			if(start!=-1)
+				appendStem(block, cache, start, block.length);
+		}
+		finally {
+			caches.add(cache);
+		}
+	}
+	private void appendStem(Block block, StemCache cache, int start, int end) {
+		char[] input = block.input;
+		int hash = 0;
+		for(int i=start;i<end;i++)
+			hash = 31*hash+input[i];
+		int mask = cache.table.length-1;
+		int position = (hash ^ (hash >>> 16)) & mask;
+		while(cache.table[position]!=0) {
+			int entry = cache.table[position]-1;
+			if(cache.hashes[entry]==hash && matches(cache.words[entry], input, start, end)) {
+				cache.occurrences[entry]++;
+				if(cache.stemChars[entry]!=null)
+					block.append(cache.stemChars[entry]);
+				return;
+			}
+			position = (position+1) & mask;
+		}
+		String word = new String(input, start, end-start);
+		String stem = stemmer.stem(asciiLetterWords?word.toLowerCase():word);
+		if(cache.size==CACHE_CAPACITY) {
+			flush(cache);
+			cache.clear();
+			position = (hash ^ (hash >>> 16)) & mask;
+		}
+		int entry = cache.size++;
+		cache.table[position] = entry+1;
+		cache.hashes[entry] = hash;
+		cache.words[entry] = word;
+		cache.stems[entry] = stem;
+		cache.stemChars[entry] = stem==null?null:stem.toCharArray();
+		cache.occurrences[entry] = 1;
+		if(stem!=null)
+			block.append(cache.stemChars[entry]);
+	}
+	private static boolean matches(String word, char[] chars, int start, int end) {
+		if(word.length()!=end-start)
+			return false;
+		for(int i=start;i<end;i++)
+			if(word.charAt(i-start)!=chars[i])
+				return false;
+		return true;
+	}
+	/**
+	 * Registers the occurrences counted by a cache to the invertible stemmer, if any.
+	 */
+	private void flush(StemCache cache) {
+		if(invertibleStemmer!=null)
+			synchronized(invertibleStemmer) {
+				for(int entry=0;entry<cache.size;entry++)
+					if(cache.occurrences[entry]!=0)
+						invertibleStemmer.register(cache.words[entry], cache.stems[entry], cache.occurrences[entry]);
+			}
+		Arrays.fill(cache.occurrences, 0, cache.size, 0);
+	}
+
+	/**
+	 * Stems text from a file or the standard input into a file or the standard output.
+	 * <pre>
+	 * StreamingStemmer [--stemmer porter|lovins|iterated|none] [--stopwords] [--ascii] [--charset UTF-8] [--threads 1] [--block 1048576] [input [output]]
+	 * </pre>
+	 * where <code>--ascii</code> selects the tokenization of {@link #setAsciiLetterWords(boolean)}.
+	 * @param args command line arguments
+	 */
+	public static void main(String[] args) {
+		String stemmerName = "porter";
+		boolean stopwords = false;
+		boolean asciiLetterWords = false;
+		Charset charset = StandardCharsets.UTF_8;
+		int threads = 1;
+		int blockSize = DEFAULT_BLOCK_SIZE;
+		String input = null;
+		String output = null;
+		for(int i=0;i<args.length;i++) {
+			if(args[i].equals("--stemmer"))
+				stemmerName = args[++i];
+			else if(args[i].equals("--stopwords"))
+				stopwords = true;
+			else if(args[i].equals("--ascii"))
+				asciiLetterWords = true;
+			else if(args[i].equals("--charset"))
+				charset = Charset.forName(args[++i]);
+			else if(args[i].equals("--threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("--block"))
+				blockSize = Integer.parseInt(args[++i]);
+			else if(input==null)
+				input = args[i];
+			else if(output==null)
+				output = args[i];
+			else
+				throw new IllegalArgumentException("Unknown argument: "+args[i]);
+		}
+		Stemmer stemmer;
+		if(stemmerName.equals("porter"))
+			stemmer = new PorterStemmer();
+		else if(stemmerName.equals("lovins"))
+			stemmer = new LovinsStemmer();
+		else if(stemmerName.equals("iterated"))
+			stemmer = new IteratedLovinsStemmer();
+		else if(stemmerName.equals("none"))
+			stemmer = new NoStemmer();
+		else
+			throw new IllegalArgumentException("Unknown stemmer: "+stemmerName);
+		if(stopwords)
+			stemmer = new StopwordRemove(stemmer);
+		StreamingStemmer streamingStemmer = new StreamingStemmer(stemmer, charset, blockSize, threads).setAsciiLetterWords(asciiLetterWords);
+		try(ReadableByteChannel in = input==null?Channels.newChannel(System.in):FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+			WritableByteChannel out = output==null?Channels.newChannel(System.out):FileChannel.open(Paths.get(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			streamingStemmer.stem(in, out);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
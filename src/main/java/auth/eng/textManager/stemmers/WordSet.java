@@ -0,0 +1,119 @@
+package auth.eng.textManager.stemmers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+/**
+ * Compact immutable set of words, whose membership checks ignore case and do not allocate any objects.
+ * All words are stored lower-cased in a single character array, which is indexed by an open addressing table.
+ * @author Emmanouil Krasanakis
+ * @see StopwordRemove
+ */
+public final class WordSet {
+	private final char[] chars;
+	private final int[] offsets;
+	private final int[] table;
+	private final int mask;
+	
+	/**
+	 * @param words a collection of words (case is ignored)
+	 */
+	public WordSet(Collection<String> words) {
+		LinkedHashSet<String> lowerCased = new LinkedHashSet<String>();
+		for(String word : words)
+			lowerCased.add(toLowerCase(word));
+		int length = 0;
+		for(String word : lowerCased)
+			length += word.length();
+		chars = new char[length];
+		offsets = new int[lowerCased.size()+1];
+		int capacity = 16;
+		while(capacity<lowerCased.size()*2)
+			capacity <<= 1;
+		table = new int[capacity];
+		mask = capacity-1;
+		int index = 0;
+		for(String word : lowerCased) {
+			word.getChars(0, word.length(), chars, offsets[index]);
+			offsets[index+1] = offsets[index]+word.length();
+			int pos = hash(word) & mask;
+			while(table[pos]!=0)
+				pos = (pos+1) & mask;
+			table[pos] = ++index;
+		}
+	}
+	/**
+	 * Loads a word list from a UTF-8 file, which contains one word per line. Empty lines and lines starting with #
+	 * are ignored.
+	 * @param file the path of the file
+	 * @return the loaded set
+	 * @throws IOException if the file cannot be read
+	 */
+	public static WordSet load(Path file) throws IOException {
+		ArrayList<String> words = new ArrayList<String>();
+		for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if(!line.isEmpty() && !line.startsWith("#"))
+				words.add(line);
+		}
+		return new WordSet(words);
+	}
+	private static String toLowerCase(String word) {
+		char[] lower = new char[word.length()];
+		for(int i=0;i<lower.length;i++)
+			lower[i] = Character.toLowerCase(word.charAt(i));
+		return new String(lower);
+	}
+	private static int hash(CharSequence word) {
+		int hash = 0;
+		for(int i=0;i<word.length();i++)
+			hash = 31*hash + Character.toLowerCase(word.charAt(i));
+		return hash ^ (hash >>> 16);
+	}
+	/**
+	 * @param word a given word
+	 * @return true if the set contains the word, ignoring case
+	 */
+	public boolean contains(CharSequence word) {
+		int pos = hash(word) & mask;
+		int length = word.length();
+		while(table[pos]!=0) {
+			int index = table[pos]-1;
+			int offset = offsets[index];
+			if(offsets[index+1]-offset==length) {
+				int i = 0;
+				while(i<length && chars[offset+i]==Character.toLowerCase(word.charAt(i)))
+					i++;
+				if(i==length)
+					return true;
+			}
+			pos = (pos+1) & mask;
+		}
+		return false;
+	}
+	/**
+	 * @return the number of words in the set
+	 */
+	public int size() {
+		return offsets.length-1;
+	}
+	/**
+	 * @return the (lower-cased) words of the set
+	 */
+	public String[] toArray() {
+		String[] words = new String[size()];
+		for(int i=0;i<words.length;i++)
+			words[i] = new String(chars, offsets[i], offsets[i+1]-offsets[i]);
+		return words;
+	}
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,102 @@
+package auth.eng.textManager.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive <code>long</code> keys to non-negative <code>int</code> values.
+ * Avoids the boxing and per-entry objects of a <code>HashMap&lt;Long, Integer&gt;</code>, which matters for
+ * vocabularies that hold millions of entries.
+ * @author Emmanouil Krasanakis
+ */
+public class LongIntHashMap {
+	private static final int MISSING = -1;
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	
+	public LongIntHashMap() {
+		this(16);
+	}
+	public LongIntHashMap(int expectedSize) {
+		int capacity = 16;
+		while(capacity*3/4<expectedSize)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, MISSING);
+		mask = capacity-1;
+	}
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+	private int slot(long key) {
+		int pos = hash(key) & mask;
+		while(values[pos]!=MISSING && keys[pos]!=key)
+			pos = (pos+1) & mask;
+		return pos;
+	}
+	/**
+	 * @param key a given key
+	 * @return the value associated with the key, or -1 if the key is not present
+	 */
+	public int get(long key) {
+		return values[slot(key)];
+	}
+	/**
+	 * @param key a given key
+	 * @return true, if the key is present in the map
+	 */
+	public boolean containsKey(long key) {
+		return get(key)!=MISSING;
+	}
+	/**
+	 * Associates a key with a value, replacing any previous association.
+	 * @param key a given key
+	 * @param value a non-negative value
+	 */
+	public void put(long key, int value) {
+		if(value<0)
+			throw new IllegalArgumentException("Only non-negative values can be stored");
+		int pos = slot(key);
+		if(values[pos]==MISSING) {
+			if((size+1)*4>keys.length*3) {
+				rehash();
+				pos = slot(key);
+			}
+			size++;
+		}
+		keys[pos] = key;
+		values[pos] = value;
+	}
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length*2);
+		for(int i=0;i<oldKeys.length;i++)
+			if(oldValues[i]!=MISSING) {
+				int pos = slot(oldKeys[i]);
+				keys[pos] = oldKeys[i];
+				values[pos] = oldValues[i];
+			}
+	}
+	/**
+	 * @return the number of stored keys
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		Arrays.fill(values, MISSING);
+		size = 0;
+	}
+}
@@ -0,0 +1,54 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link FuzzyIndex} finds the same words as computing all Levenshtein distances.
+ * @author Emmanouil Krasanakis
+ */
+public class FuzzyIndexTest extends TestCase {
+	public void testEmptyQuery() {
+		FuzzyIndex index = new FuzzyIndex();
+		index.add("a", 0);
+		index.add("ab", 1);
+		assertEquals(0, index.search("", 0).size());
+		assertEquals(1, index.search("", 1).size());
+		index.add("", 2);
+		ArrayList<FuzzyIndex.Match> matches = index.search("", 0);
+		assertEquals(1, matches.size());
+		assertEquals(2, matches.get(0).getId());
+		assertEquals(0, new FuzzyIndex().search("", 0).size());
+	}
+	public void testRandomWords() {
+		Random random = new Random(3);
+		String[] words = new String[300];
+		FuzzyIndex index = new FuzzyIndex();
+		for(int i=0;i<words.length;i++) {
+			StringBuilder word = new StringBuilder();
+			for(int length=random.nextInt(7);length>0;length--)
+				word.append((char)('a'+random.nextInt(3)));
+			words[i] = word.toString();
+			index.add(words[i], i);
+		}
+		for(int test=0;test<100;test++) {
+			StringBuilder query = new StringBuilder();
+			for(int length=random.nextInt(7);length>0;length--)
+				query.append((char)('a'+random.nextInt(3)));
+			int maxDistance = random.nextInt(3);
+			int[] distances = new int[words.length];
+			for(FuzzyIndex.Match match : index.search(query.toString(), maxDistance)) {
+				assertEquals(words[match.getId()], match.getWord());
+				distances[match.getId()] = match.getDistance()+1;
+			}
+			for(int i=0;i<words.length;i++) {
+				int distance = LevenshteinDistance.computeLevenshteinDistance(query.toString(), words[i]);
+				if(index.search(words[i], 0).get(0).getId()!=i)//duplicate words keep the last id
+					continue;
+				assertEquals(distance<=maxDistance?distance+1:0, distances[i]);
+			}
+		}
+	}
+}
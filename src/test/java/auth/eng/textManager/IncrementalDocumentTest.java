@@ -0,0 +1,107 @@
+package auth.eng.textManager;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link IncrementalDocument} keeps the same sentences, vectors and feature counts as analyzing its
+ * whole text again after each edit.
+ * @author Emmanouil Krasanakis
+ */
+public class IncrementalDocumentTest extends TestCase {
+	private static final String ALPHABET = "ab (){}[].\n\n \t\r x";
+
+	private static String randomText(Random random, int length) {
+		StringBuilder builder = new StringBuilder();
+		for(int i=0;i<length;i++) {
+			int choice = random.nextInt(10);
+			if(choice<2)
+				builder.append("word").append(random.nextInt(5));
+			else if(choice==2)
+				builder.append(". ");
+			else
+				builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return builder.toString();
+	}
+	private static void assertConsistent(WordModel model, IncrementalDocument document) {
+		String[] sentences = WordModel.getTextSentences(document.getText());
+		assertEquals(Arrays.asList(sentences), Arrays.asList(document.getSentences()));
+		SparseVector[] vectors = document.getSentenceVectors();
+		double[] counts = new double[model.getCurrentFeatureVectorLength()+1];
+		for(int i=0;i<sentences.length;i++) {
+			SparseVector expected = model.getSentenceTermFrequencyVector(sentences[i], false);
+			assertEquals(Arrays.toString(expected.toDense(counts.length)), Arrays.toString(vectors[i].toDense(counts.length)));
+			for(int j=0;j<expected.size();j++)
+				counts[expected.getId(j)] += expected.getValue(j);
+		}
+		for(int id=0;id<counts.length;id++)
+			assertEquals(counts[id], document.getFeatureCount(id), 1.E-9);
+	}
+
+	public void testRandomEdits() {
+		Random random = new Random(7);
+		for(int test=0;test<500;test++) {
+			WordModel model = new WordModel.BagOfWords(new NoStemmer());
+			IncrementalDocument document = new IncrementalDocument(model, randomText(random, random.nextInt(60)));
+			assertConsistent(model, document);
+			for(int edit=0;edit<20;edit++) {
+				String[] lines = document.getText().split("\n", -1);
+				int startLine = random.nextInt(lines.length);
+				int endLine = startLine+random.nextInt(Math.min(3, lines.length-startLine));
+				int startColumn = random.nextInt(lines[startLine].length()+1);
+				int endColumn = startLine==endLine
+						?startColumn+random.nextInt(lines[endLine].length()-startColumn+1)
+						:random.nextInt(lines[endLine].length()+1);
+				String replacement = randomText(random, random.nextInt(8));
+				StringBuilder expected = new StringBuilder();
+				for(int i=0;i<startLine;i++)
+					expected.append(lines[i]).append('\n');
+				expected.append(lines[startLine], 0, startColumn).append(replacement).append(lines[endLine].substring(endColumn));
+				for(int i=endLine+1;i<lines.length;i++)
+					expected.append('\n').append(lines[i]);
+				document.edit(startLine, startColumn, endLine, endColumn, replacement);
+				assertEquals(expected.toString(), document.getText());
+				assertConsistent(model, document);
+			}
+		}
+	}
+	public void testFinalDotLine() {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		assertConsistent(model, new IncrementalDocument(model, "\n\n.\n"));
+		assertConsistent(model, new IncrementalDocument(model, "d\n) [\n\n. "));
+		IncrementalDocument document = new IncrementalDocument(model, "a\nb\n\nc");
+		document.edit(3, 0, 3, 1, ". ");
+		assertConsistent(model, document);
+		document.edit(1, 0, 1, 1, "");
+		assertConsistent(model, document);
+	}
+	public void testVocabularyIsNotCounted() {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		model.getVocabulary().setStreamingCap(3);
+		IncrementalDocument document = new IncrementalDocument(model, "a b\nc d\ne f\ng h");
+		document.edit(3, 3, 3, 3, " i");
+		assertEquals(0, model.getVocabulary().getDocumentCount());
+		SparseVector[] vectors = document.getSentenceVectors();
+		String[] sentences = document.getSentences();
+		for(int i=0;i<vectors.length;i++)
+			assertEquals(sentences[i], model.convertVectorToFeatureSentence(vectors[i].toDense(model.getCurrentFeatureVectorLength())));
+	}
+	public void testPruneRemapsVectors() {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		IncrementalDocument document = new IncrementalDocument(model, "a b\nc d\ne f");
+		model.getSentenceTermFrequencyVector("e f b");
+		model.getVocabulary().prune(1, Integer.MAX_VALUE, 1);
+		SparseVector[] vectors = document.getSentenceVectors();
+		String[] expected = {"b", "", "e f"};
+		double total = 0;
+		for(int i=0;i<vectors.length;i++) {
+			assertEquals(expected[i], model.convertVectorToFeatureSentence(vectors[i].toDense(model.getCurrentFeatureVectorLength())));
+			total += vectors[i].sum();
+		}
+		assertEquals(total, document.getTermFrequencyVector().sum(), 0);
+	}
+}
@@ -0,0 +1,89 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that MaxScore retrieval of {@link InvertedIndex} returns the same top-k documents as scoring every
+ * document exhaustively.
+ * @author Emmanouil Krasanakis
+ */
+public class InvertedIndexTest extends TestCase {
+	private static final int FEATURES = 300;
+	
+	/**
+	 * @return a term frequency vector whose features follow a Zipf-like distribution, so that posting lists of
+	 * frequent features span many blocks
+	 */
+	private static SparseVector randomVector(Random random, int terms) {
+		int[] ids = new int[terms];
+		for(int i=0;i<terms;i++)
+			ids[i] = (int)(FEATURES*Math.pow(random.nextDouble(), 3));
+		return SparseVector.fromFeatureCounts(ids, null);
+	}
+	private static double[] exhaustiveScores(SparseVector[] documents, SparseVector query, InvertedIndex.Scoring scoring) {
+		double[] scores = new double[documents.length];
+		int[] documentFrequencies = new int[FEATURES];
+		double totalLength = 0;
+		for(SparseVector document : documents) {
+			for(int i=0;i<document.size();i++)
+				documentFrequencies[document.getId(i)]++;
+			totalLength += Math.round(document.sum());
+		}
+		double averageLength = totalLength/documents.length;
+		for(int d=0;d<documents.length;d++) {
+			SparseVector document = documents[d];
+			long length = Math.round(document.sum());
+			for(int i=0;i<query.size();i++)
+				for(int j=0;j<document.size();j++)
+					if(query.getId(i)==document.getId(j)) {
+						if(scoring==InvertedIndex.Scoring.COSINE)
+							scores[d] += query.getValue(i)/query.norm()*(float)(document.getValue(j)/document.norm());
+						else {
+							int frequency = documentFrequencies[query.getId(i)];
+							double idf = Math.log(1+(documents.length-frequency+0.5)/(frequency+0.5));
+							double weight = (float)document.getValue(j);
+							scores[d] += query.getValue(i)*idf*weight*(1.2+1)/(weight+1.2*(1-0.75+0.75*length/averageLength));
+						}
+					}
+		}
+		return scores;
+	}
+	private static void assertTopK(SparseVector[] documents, InvertedIndex.Scoring scoring, long seed) {
+		Random random = new Random(seed);
+		for(int d=0;d<documents.length;d++)
+			documents[d] = randomVector(random, 1+random.nextInt(30));
+		InvertedIndex index = new InvertedIndex(scoring);
+		for(SparseVector document : documents)
+			index.add(document);
+		for(int test=0;test<50;test++) {
+			SparseVector query = randomVector(random, 1+random.nextInt(6));
+			double[] scores = exhaustiveScores(documents, query, scoring);
+			double[] sorted = scores.clone();
+			Arrays.sort(sorted);
+			for(int k : new int[]{1, 10, 100}) {
+				ArrayList<InvertedIndex.Result> results = index.search(query, k);
+				int positive = 0;
+				for(double score : scores)
+					if(score>0)
+						positive++;
+				assertEquals(Math.min(k, positive), results.size());
+				for(int i=0;i<results.size();i++) {
+					InvertedIndex.Result result = results.get(i);
+					assertEquals(scores[result.getDocument()], result.getScore(), 1.E-9);
+					assertEquals(sorted[sorted.length-1-i], result.getScore(), 1.E-9);
+				}
+			}
+		}
+	}
+	
+	public void testCosine() {
+		assertTopK(new SparseVector[2000], InvertedIndex.Scoring.COSINE, 23);
+	}
+	public void testBM25() {
+		assertTopK(new SparseVector[2000], InvertedIndex.Scoring.BM25, 29);
+	}
+}
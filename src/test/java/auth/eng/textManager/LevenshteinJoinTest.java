@@ -0,0 +1,75 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link LevenshteinJoin} finds exactly the pairs that comparing all pairs with
+ * {@link LevenshteinDistance} finds.
+ * @author Emmanouil Krasanakis
+ */
+public class LevenshteinJoinTest extends TestCase {
+	private static final String[] WORDS = {"a", "A", "the", "The", "model", "Model", "word", "words"};
+	
+	private static String randomString(Random random) {
+		StringBuilder string = new StringBuilder();
+		int length = random.nextInt(12);
+		for(int i=0;i<length;i++)
+			string.append("abc".charAt(random.nextInt(3)));
+		return string.toString();
+	}
+	private static String[] randomSentence(Random random) {
+		String[] sentence = new String[random.nextInt(8)];
+		for(int i=0;i<sentence.length;i++)
+			sentence[i] = WORDS[random.nextInt(WORDS.length)];
+		return sentence;
+	}
+	private static String toString(List<LevenshteinJoin.Match> matches) {
+		StringBuilder string = new StringBuilder();
+		for(LevenshteinJoin.Match match : matches)
+			string.append(match.getFirst()).append(',').append(match.getSecond()).append(':').append((float)match.getSimilarity()).append('\n');
+		return string.toString();
+	}
+	
+	public void testStrings() {
+		Random random = new Random(17);
+		ArrayList<String> lhs = new ArrayList<String>();
+		ArrayList<String> rhs = new ArrayList<String>();
+		for(int i=0;i<150;i++)
+			lhs.add(randomString(random));
+		for(int i=0;i<120;i++)
+			rhs.add(randomString(random));
+		for(double threshold : new double[]{0, 0.3, 0.5, 0.75, 1}) {
+			StringBuilder expected = new StringBuilder();
+			for(int i=0;i<lhs.size();i++)
+				for(int j=0;j<rhs.size();j++) {
+					double similarity = LevenshteinDistance.levenshteinSimilarity(lhs.get(i), rhs.get(j));
+					if(similarity>=threshold)
+						expected.append(i).append(',').append(j).append(':').append((float)similarity).append('\n');
+				}
+			assertEquals("threshold "+threshold, expected.toString(), toString(LevenshteinJoin.joinStrings(lhs, rhs, threshold)));
+		}
+	}
+	public void testSentences() {
+		Random random = new Random(19);
+		ArrayList<String[]> lhs = new ArrayList<String[]>();
+		ArrayList<String[]> rhs = new ArrayList<String[]>();
+		for(int i=0;i<130;i++)
+			lhs.add(randomSentence(random));
+		for(int i=0;i<140;i++)
+			rhs.add(randomSentence(random));
+		for(double threshold : new double[]{0, 0.4, 0.6, 0.8, 1}) {
+			StringBuilder expected = new StringBuilder();
+			for(int i=0;i<lhs.size();i++)
+				for(int j=0;j<rhs.size();j++) {
+					double similarity = LevenshteinDistance.levenshteinSentenceSimilarity(lhs.get(i), rhs.get(j));
+					if(similarity>=threshold)
+						expected.append(i).append(',').append(j).append(':').append((float)similarity).append('\n');
+				}
+			assertEquals("threshold "+threshold, expected.toString(), toString(LevenshteinJoin.joinSentences(lhs, rhs, threshold)));
+		}
+	}
+}
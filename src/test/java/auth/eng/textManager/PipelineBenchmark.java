@@ -0,0 +1,370 @@
+package auth.eng.textManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import org.HdrHistogram.Histogram;
+
+import auth.eng.textManager.stemmers.PorterStemmer;
+import auth.eng.textManager.stemmers.Stemmer;
+
+/**
+ * Macro benchmark of the full text path on generated Zipfian corpora: each document is split through
+ * {@link WordModel#getTextSentences(String)}, each sentence is vectorized (which extracts its features) and compared
+ * to the previous sentence by cosine similarity. Vocabulary size, sentence length, model, thread count and model
+ * sharing are swept and each configuration reports throughput, per-document latency percentiles, allocation rate
+ * (where the JVM can measure it), peak heap, the final vocabulary size and the hit rate of the feature cache.
+ * <br>
+ * With private sharing each thread uses its own model, since models are not thread-safe. With shared sharing all
+ * threads use one model with an attached {@link FeatureCache} and vectorize while synchronized on it. Documents are
+ * processed <code>--repeats</code> times, so that repeated sentences can hit the cache.
+ * <br>
+ * A retrieval stage follows, which indexes the sentences of each corpus in an {@link InvertedIndex} and a
+ * {@link VectorStore} and reports the throughput and latency of BM25 searches and of {@link SimilarityService}
+ * requests issued by concurrent clients. Run it from the test classpath, e.g.
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; auth.eng.textManager.PipelineBenchmark
+ *     --vocabulary=1000,100000 --length=8,32 --models=BagOfWords,Bigram --threads=1,8 --documents=20000
+ *     --sharing=private,shared --repeats=4 --queries=2000</pre>
+ * It is not named as a test, so that it does not run during builds.
+ * @author Emmanouil Krasanakis
+ */
+public class PipelineBenchmark {
+	private static final int SENTENCES_PER_DOCUMENT = 8;
+	private static final double ZIPF_EXPONENT = 1.0;
+	private static final int FEATURE_CACHE_SIZE = 1 << 16;
+	private static final int RETRIEVED = 10;
+	
+	/**
+	 * Measures the bytes allocated by threads where the JVM supports it, without requiring com.sun.management.
+	 */
+	private static class AllocationCounter {
+		private static final boolean SUPPORTED = isSupported();
+		private static boolean isSupported() {
+			try {
+				java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+				return bean instanceof com.sun.management.ThreadMXBean
+						&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()
+						&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled();
+			}
+			catch(LinkageError | UnsupportedOperationException e) {
+				return false;
+			}
+		}
+		/**
+		 * @return the bytes allocated by the current thread so far, or -1 if they cannot be measured
+		 */
+		static long allocatedBytes() {
+			if(!SUPPORTED)
+				return -1;
+			return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+	
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int[] vocabularies = {1000, 100000};
+		int[] lengths = {8, 32};
+		String[] models = {"BagOfWords", "Bigram", "Skipgram", "CharacterNGram"};
+		int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+		int documents = 5000;
+		String[] sharings = {"private", "shared"};
+		int repeats = 1;
+		int queries = 1000;
+		for(String arg : args) {
+			String value = arg.substring(arg.indexOf('=')+1);
+			if(arg.startsWith("--vocabulary="))
+				vocabularies = parseInts(value);
+			else if(arg.startsWith("--length="))
+				lengths = parseInts(value);
+			else if(arg.startsWith("--models="))
+				models = value.split(",");
+			else if(arg.startsWith("--threads="))
+				threads = parseInts(value);
+			else if(arg.startsWith("--documents="))
+				documents = Integer.parseInt(value);
+			else if(arg.startsWith("--sharing="))
+				sharings = value.split(",");
+			else if(arg.startsWith("--repeats="))
+				repeats = Integer.parseInt(value);
+			else if(arg.startsWith("--queries="))
+				queries = Integer.parseInt(value);
+			else
+				throw new IllegalArgumentException("Unknown argument "+arg);
+		}
+		for(String sharing : sharings)
+			if(!sharing.equals("private") && !sharing.equals("shared"))
+				throw new IllegalArgumentException("Unknown sharing "+sharing);
+		System.out.println("model\tvocabulary\tlength\tthreads\tsharing\tdocs/s\tp50(us)\tp90(us)\tp99(us)\tp99.9(us)\tmax(us)\talloc(MB/s)\tpeakHeap(MB)\tfeatures\tcacheHits(%)");
+		for(int vocabulary : vocabularies)
+			for(int length : lengths) {
+				String[] corpus = generateCorpus(vocabulary, length, Math.max(1, documents/repeats), 42);
+				for(String model : models)
+					for(int threadCount : threads)
+						for(String sharing : sharings) {
+							boolean shared = sharing.equals("shared");
+							run(model, corpus, threadCount, shared, Math.min(documents/10, 500), false);//warmup
+							System.out.println(model+"\t"+vocabulary+"\t"+length+"\t"+threadCount+"\t"+sharing+"\t"+run(model, corpus, threadCount, shared, documents, true));
+						}
+			}
+		if(queries<=0)
+			return;
+		System.out.println();
+		System.out.println("model\tvocabulary\tlength\tthreads\tindex(docs/s)\tsearch(q/s)\tsearch p99(us)\tservice(q/s)\tservice p99(us)");
+		for(int vocabulary : vocabularies)
+			for(int length : lengths) {
+				String[] corpus = generateCorpus(vocabulary, length, documents, 42);
+				String[] queryDocuments = generateCorpus(vocabulary, length, queries, 43);
+				String[] querySentences = new String[queries];
+				for(int i=0;i<queries;i++)
+					querySentences[i] = WordModel.getTextSentences(queryDocuments[i])[0];
+				for(String model : models) {
+					retrieve(model, corpus, querySentences, threads);//warmup
+					for(String line : retrieve(model, corpus, querySentences, threads))
+						System.out.println(model+"\t"+vocabulary+"\t"+length+"\t"+line);
+				}
+			}
+	}
+	private static int[] parseInts(String values) {
+		String[] parts = values.split(",");
+		int[] ints = new int[parts.length];
+		for(int i=0;i<parts.length;i++)
+			ints[i] = Integer.parseInt(parts[i].trim());
+		return ints;
+	}
+	private static WordModel createModel(String name) {
+		Stemmer stemmer = new PorterStemmer();
+		if(name.equals("BagOfWords"))
+			return new WordModel.BagOfWords(stemmer);
+		if(name.equals("Bigram"))
+			return new WordModel.Bigram(stemmer);
+		if(name.equals("Skipgram"))
+			return new WordModel.Skipgram(stemmer);
+		if(name.equals("CharacterNGram"))
+			return new WordModel.CharacterNGram(stemmer);
+		if(name.equals("BagOfWordNet"))
+			return new WordModel.BagOfWordNet(stemmer);
+		if(name.startsWith("NGram"))
+			return new WordModel.NGram(Integer.parseInt(name.substring(5)), stemmer);
+		throw new IllegalArgumentException("Unknown model "+name);
+	}
+	
+	/**
+	 * Generates documents of identifier-like words whose ranks follow a Zipfian distribution.
+	 */
+	static String[] generateCorpus(int vocabularySize, int sentenceLength, int documents, long seed) {
+		String[] words = new String[vocabularySize];
+		for(int i=0;i<vocabularySize;i++)
+			words[i] = word(i);
+		double[] cumulative = new double[vocabularySize];
+		double sum = 0;
+		for(int i=0;i<vocabularySize;i++)
+			cumulative[i] = sum += 1/Math.pow(i+1, ZIPF_EXPONENT);
+		Random random = new Random(seed);
+		String[] corpus = new String[documents];
+		StringBuilder builder = new StringBuilder();
+		for(int d=0;d<documents;d++) {
+			builder.setLength(0);
+			for(int s=0;s<SENTENCES_PER_DOCUMENT;s++) {
+				for(int w=0;w<sentenceLength;w++) {
+					int position = Arrays.binarySearch(cumulative, random.nextDouble()*sum);
+					String word = words[Math.min(position<0?-position-1:position, vocabularySize-1)];
+					if(w!=0 && random.nextInt(3)==0)//camel case joins some words into identifiers
+						builder.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+					else
+						builder.append(w==0?"":" ").append(word);
+				}
+				builder.append(".\n");
+			}
+			corpus[d] = builder.toString();
+		}
+		return corpus;
+	}
+	private static String word(int rank) {
+		StringBuilder word = new StringBuilder();
+		String syllables = "bacedifoguhakelimonupareso";
+		do {
+			int syllable = rank%13;
+			word.append(syllables, 2*syllable, 2*syllable+2);
+			rank /= 13;
+		}
+		while(rank>0);
+		return word.toString();
+	}
+	
+	private static String run(String modelName, String[] corpus, int threadCount, boolean shared, int documents, boolean report) throws InterruptedException {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType()==MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		WordModel sharedModel = shared?createModel(modelName).setFeatureCache(new FeatureCache(FEATURE_CACHE_SIZE)):null;
+		Histogram[] histograms = new Histogram[threadCount];
+		long[] features = new long[threadCount];
+		AtomicLong allocated = new AtomicLong();
+		AtomicLong next = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(threadCount);
+		Function<Integer, Runnable> worker = thread -> () -> {
+			long allocatedBefore = AllocationCounter.allocatedBytes();
+			WordModel model = shared?sharedModel:createModel(modelName);
+			Histogram histogram = new Histogram(3600000000000L, 3);
+			double checksum = 0;
+			long document;
+			while((document = next.getAndIncrement())<documents) {
+				long start = System.nanoTime();
+				SparseVector previous = null;
+				for(String sentence : WordModel.getTextSentences(corpus[(int)(document%corpus.length)])) {
+					SparseVector vector;
+					if(shared)
+						synchronized(model) {
+							vector = model.getSentenceSparseFeatureVector(sentence);
+						}
+					else
+						vector = model.getSentenceSparseFeatureVector(sentence);
+					if(previous!=null)
+						checksum += vector.similarity(previous);
+					previous = vector;
+				}
+				histogram.recordValue(System.nanoTime()-start);
+			}
+			histograms[thread] = histogram;
+			synchronized(model) {
+				features[thread] = model.getCurrentFeatureVectorLength()+(checksum<0?1:0);//keeps the similarities from being optimized away
+			}
+			if(allocatedBefore!=-1)
+				allocated.addAndGet(AllocationCounter.allocatedBytes()-allocatedBefore);
+			done.countDown();
+		};
+		long start = System.nanoTime();
+		for(int thread=0;thread<threadCount;thread++)
+			new Thread(worker.apply(thread), "PipelineBenchmark-"+thread).start();
+		done.await();
+		double seconds = (System.nanoTime()-start)/1.E9;
+		if(!report)
+			return null;
+		Histogram latency = new Histogram(3600000000000L, 3);
+		long maxFeatures = 0;
+		for(int thread=0;thread<threadCount;thread++) {
+			latency.add(histograms[thread]);
+			maxFeatures = Math.max(maxFeatures, features[thread]);
+		}
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : heapPools)
+			peakHeap += pool.getPeakUsage().getUsed();
+		return String.format(Locale.ROOT, "%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%s\t%.1f\t%d\t%s",
+				documents/seconds,
+				latency.getValueAtPercentile(50)/1000.,
+				latency.getValueAtPercentile(90)/1000.,
+				latency.getValueAtPercentile(99)/1000.,
+				latency.getValueAtPercentile(99.9)/1000.,
+				latency.getMaxValue()/1000.,
+				AllocationCounter.SUPPORTED?String.format(Locale.ROOT, "%.1f", allocated.get()/seconds/(1 << 20)):"n/a",
+				peakHeap/(double)(1 << 20),
+				maxFeatures,
+				shared?String.format(Locale.ROOT, "%.1f", 100*sharedModel.getFeatureCache().getHitRate()):"n/a");
+	}
+	
+	/**
+	 * Indexes the sentences of a corpus and measures, for each thread count, BM25 searches of pre-vectorized queries
+	 * and requests to a {@link SimilarityService}, both issued by that many closed-loop clients.
+	 * @return one line of results for each thread count
+	 */
+	private static List<String> retrieve(String modelName, String[] corpus, String[] queries, int[] threads) throws InterruptedException, ExecutionException {
+		WordModel model = createModel(modelName);
+		InvertedIndex index = new InvertedIndex(InvertedIndex.Scoring.BM25);
+		VectorStore store = new VectorStore();
+		long start = System.nanoTime();
+		for(String document : corpus)
+			for(String sentence : WordModel.getTextSentences(document)) {
+				SparseVector termFrequencies = model.getSentenceTermFrequencyVector(sentence);
+				index.add(termFrequencies);
+				store.append(termFrequencies);
+			}
+		double indexSeconds = (System.nanoTime()-start)/1.E9;
+		SparseVector[] queryVectors = new SparseVector[queries.length];
+		for(int i=0;i<queries.length;i++)
+			queryVectors[i] = model.getSentenceKnownFeatureVector(queries[i]);
+		List<String> lines = new ArrayList<String>();
+		for(int threadCount : threads) {
+			Histogram searchLatency = new Histogram(3600000000000L, 3);
+			double searchSeconds = runClients(threadCount, queries.length, searchLatency, query -> {
+				if(index.search(queryVectors[query], RETRIEVED).size()>RETRIEVED)
+					throw new IllegalStateException("Too many search results");
+			});
+			Histogram serviceLatency = new Histogram(3600000000000L, 3);
+			double serviceSeconds;
+			try(SimilarityService service = new SimilarityService(model, store, RETRIEVED)) {
+				serviceSeconds = runClients(threadCount, queries.length, serviceLatency, query -> {
+					try {
+						if(service.submit(queries[query]).get().size()>RETRIEVED)
+							throw new IllegalStateException("Too many similarity service results");
+					}
+					catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException(e);
+					}
+					catch(ExecutionException e) {
+						throw new IllegalStateException(e.getCause());
+					}
+				});
+			}
+			lines.add(String.format(Locale.ROOT, "%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f",
+					threadCount,
+					corpus.length/indexSeconds,
+					queries.length/searchSeconds,
+					searchLatency.getValueAtPercentile(99)/1000.,
+					queries.length/serviceSeconds,
+					serviceLatency.getValueAtPercentile(99)/1000.));
+		}
+		return lines;
+	}
+	/**
+	 * Issues queries from closed-loop clients, each of which waits for its query to complete before issuing the next.
+	 * @return the elapsed seconds
+	 */
+	private static double runClients(int threadCount, int queries, Histogram latency, IntConsumer query) throws InterruptedException, ExecutionException {
+		AtomicLong next = new AtomicLong();
+		Histogram[] histograms = new Histogram[threadCount];
+		Throwable[] errors = new Throwable[threadCount];
+		Thread[] clients = new Thread[threadCount];
+		long start = System.nanoTime();
+		for(int thread=0;thread<threadCount;thread++) {
+			int client = thread;
+			clients[thread] = new Thread(() -> {
+				Histogram histogram = new Histogram(3600000000000L, 3);
+				try {
+					long position;
+					while((position = next.getAndIncrement())<queries) {
+						long queryStart = System.nanoTime();
+						query.accept((int)position);
+						histogram.recordValue(System.nanoTime()-queryStart);
+					}
+				}
+				catch(Throwable e) {
+					errors[client] = e;
+				}
+				histograms[client] = histogram;
+			}, "PipelineBenchmark-client-"+thread);
+			clients[thread].start();
+		}
+		for(Thread client : clients)
+			client.join();
+		double seconds = (System.nanoTime()-start)/1.E9;
+		for(int thread=0;thread<threadCount;thread++) {
+			if(errors[thread]!=null)
+				throw new ExecutionException(errors[thread]);
+			latency.add(histograms[thread]);
+		}
+		return seconds;
+	}
+}
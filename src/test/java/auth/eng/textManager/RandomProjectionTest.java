@@ -0,0 +1,55 @@
+package auth.eng.textManager;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that dot products of vectors projected by {@link RandomProjection} are unbiased estimates of the dot
+ * products of the original vectors, i.e. that their mean over many seeds approaches the original dot products.
+ * @author Emmanouil Krasanakis
+ */
+public class RandomProjectionTest extends TestCase {
+	private static final int SEEDS = 2000;
+	
+	private static SparseVector randomVector(Random random, int from, int to) {
+		int[] ids = new int[20];
+		double[] values = new double[ids.length];
+		for(int i=0;i<ids.length;i++) {
+			ids[i] = from+random.nextInt(to-from);
+			values[i] = random.nextDouble();
+		}
+		return SparseVector.fromFeatureCounts(ids, values);
+	}
+	/**
+	 * Asserts that the mean projected dot product is within five standard errors of the original dot product.
+	 */
+	private static void assertUnbiased(RandomProjection.Method method, int dimensions, SparseVector vector1, SparseVector vector2) {
+		double sum = 0;
+		double sumOfSquares = 0;
+		for(int seed=0;seed<SEEDS;seed++) {
+			RandomProjection projection = new RandomProjection(dimensions, method, seed);
+			double estimate = RandomProjection.dot(projection.project(vector1), projection.project(vector2));
+			sum += estimate;
+			sumOfSquares += estimate*estimate;
+		}
+		double mean = sum/SEEDS;
+		double standardError = Math.sqrt((sumOfSquares/SEEDS-mean*mean)/SEEDS);
+		assertTrue(standardError>0);
+		double expected = vector1.dot(vector2);
+		assertTrue(method+" "+dimensions+": "+mean+" estimates "+expected, Math.abs(mean-expected)<=5*standardError);
+	}
+	
+	public void testUnbiasedDotProducts() {
+		Random random = new Random(41);
+		SparseVector overlapping1 = randomVector(random, 0, 30);
+		SparseVector overlapping2 = randomVector(random, 0, 30);
+		SparseVector disjoint = randomVector(random, 1000, 1030);
+		for(RandomProjection.Method method : RandomProjection.Method.values())
+			for(int dimensions : new int[]{15, 64}) {
+				assertUnbiased(method, dimensions, overlapping1, overlapping2);
+				assertUnbiased(method, dimensions, overlapping1, overlapping1);
+				assertUnbiased(method, dimensions, overlapping1, disjoint);
+			}
+	}
+}
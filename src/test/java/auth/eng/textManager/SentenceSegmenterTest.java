@@ -0,0 +1,85 @@
+package auth.eng.textManager;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link SentenceSegmenter} splits text, read either from a string or a {@link Reader} or split in
+ * parallel, into the same sentences as the regular expression that {@link WordModel#getTextSentences(String)}
+ * originally used.
+ * @author Emmanouil Krasanakis
+ */
+public class SentenceSegmenterTest extends TestCase {
+	private static final String[] PIECES = {"a", "B", "7", " ", "  ", "\t", "\r", "\n", "\n\n", ". ", ".", ".\n", "(", ")", "{", "}", "[", "]", " ", "\u0085", "\u000B"};
+
+	private static String[] splitWithRegex(String text) {
+		String[] allSentences = text.split("(\\n|(\\.\\s+($(|\\n|\\s+(?=[A-Z0-9])))))");
+		ArrayList<String> sentences = new ArrayList<String>();
+		String currentString = "";
+		int accumulation = 0;
+		for(String sentence : allSentences) {
+			for(int i=0;i<sentence.length();i++) {
+				char c = sentence.charAt(i);
+				if(c=='(' || c=='{' || c=='[')
+					accumulation++;
+				else if(c==')' || c=='}' || c==']')
+					accumulation--;
+			}
+			if(accumulation>0)
+				currentString += sentence+" ";
+			else {
+				currentString += sentence;
+				sentences.add(currentString);
+				currentString = "";
+			}
+		}
+		if(!currentString.isEmpty())
+			sentences.add(currentString);
+		return sentences.toArray(new String[sentences.size()]);
+	}
+	private static String randomText(Random random, int pieces) {
+		StringBuilder text = new StringBuilder();
+		for(int i=0;i<pieces;i++)
+			text.append(PIECES[random.nextInt(PIECES.length)]);
+		return text.toString();
+	}
+	private static String[] segment(SentenceSegmenter segmenter) {
+		ArrayList<String> sentences = new ArrayList<String>();
+		while(segmenter.next())
+			sentences.add(segmenter.getSentence());
+		return sentences.toArray(new String[sentences.size()]);
+	}
+	/**
+	 * A reader that returns text in small chunks of random lengths.
+	 */
+	private static Reader chunkedReader(String text, Random random) {
+		return new StringReader(text) {
+			@Override
+			public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+				return super.read(buffer, offset, Math.min(length, 1+random.nextInt(5)));
+			}
+		};
+	}
+
+	public void testSequential() {
+		Random random = new Random(11);
+		for(int test=0;test<3000;test++) {
+			String text = randomText(random, random.nextInt(30));
+			String expected = Arrays.toString(splitWithRegex(text));
+			assertEquals(text, expected, Arrays.toString(WordModel.getTextSentences(text)));
+			assertEquals(text, expected, Arrays.toString(segment(new SentenceSegmenter(chunkedReader(text, random)))));
+		}
+	}
+	public void testParallel() {
+		Random random = new Random(13);
+		for(int test=0;test<20;test++) {
+			String text = randomText(random, 150000)+randomText(random, random.nextInt(4));
+			assertEquals(Arrays.toString(splitWithRegex(text)), Arrays.toString(WordModel.getTextSentences(text, 4)));
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package auth.eng.textManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link SimilarityService} leaves the model's vocabulary unchanged while answering queries and that
+ * failed batches do not stop it.
+ * @author Emmanouil Krasanakis
+ */
+public class SimilarityServiceTest extends TestCase {
+	public void testQueriesAreNotCounted() throws Exception {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		VectorStore corpus = new VectorStore();
+		corpus.append(model.getSentenceSparseFeatureVector("a b c"));
+		corpus.append(model.getSentenceSparseFeatureVector("c d"));
+		model.getVocabulary().setStreamingCap(4);
+		long hash = model.getVocabulary().getHash();
+		try(SimilarityService service = new SimilarityService(model, corpus, 2)) {
+			List<SimilarityService.Match> matches = service.submit("d e f g h").get();
+			assertEquals(1, matches.size());
+			assertEquals(1, matches.get(0).getRow());
+			assertEquals(0, service.submit("x y z").get().size());
+		}
+		assertEquals(hash, model.getVocabulary().getHash());
+		assertEquals(2, model.getVocabulary().getDocumentCount());
+	}
+	public void testErrorsFailOnlyTheirBatch() throws Exception {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer()) {
+			@Override
+			public String[] getSentenceFeatures(String sentence) {
+				if(sentence.equals("fail"))
+					throw new AssertionError("failed query");
+				return super.getSentenceFeatures(sentence);
+			}
+		};
+		VectorStore corpus = new VectorStore();
+		corpus.append(model.getSentenceSparseFeatureVector("a b"));
+		try(SimilarityService service = new SimilarityService(model, corpus, 1)) {
+			try {
+				service.submit("fail").get();
+				fail("Completed a failed query");
+			}
+			catch(ExecutionException e) {
+				assertTrue(e.getCause() instanceof AssertionError);
+			}
+			assertEquals(1, service.submit("a").get().size());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package auth.eng.textManager;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link TermWeighting} snapshots are frozen and that document frequencies follow vocabulary pruning.
+ * @author Emmanouil Krasanakis
+ */
+public class TermWeightingTest extends TestCase {
+	public void testSnapshotIsFrozen() {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		TermWeighting weighting = new TermWeighting(TermWeighting.Scheme.TF_IDF, model.getVocabulary());
+		weighting.add(model.getSentenceTermFrequencyVector("a b"));
+		TermWeighting.Snapshot snapshot = weighting.snapshot();
+		SparseVector query = model.getSentenceTermFrequencyVector("a", false);
+		double weight = weighting.weigh(query, snapshot).getValue(0);
+		weighting.add(model.getSentenceTermFrequencyVector("a c"));
+		assertEquals(1, snapshot.getDocumentFrequency(query.getId(0)));
+		assertEquals(weight, weighting.weigh(query, snapshot).getValue(0), 0);
+		assertEquals(2, weighting.snapshot().getDocumentFrequency(query.getId(0)));
+	}
+	public void testInterleavedSnapshots() {
+		Random random = new Random(5);
+		TermWeighting weighting = new TermWeighting(TermWeighting.Scheme.BM25);
+		int[] counts = new int[10000];
+		ArrayList<TermWeighting.Snapshot> snapshots = new ArrayList<TermWeighting.Snapshot>();
+		ArrayList<int[]> expected = new ArrayList<int[]>();
+		for(int document=0;document<200;document++) {
+			int[] ids = new int[1+random.nextInt(5)];
+			for(int i=0;i<ids.length;i++)
+				ids[i] = random.nextInt(random.nextBoolean()?100:counts.length);
+			SparseVector vector = SparseVector.fromFeatureIds(ids, null);
+			for(int i=0;i<vector.size();i++)
+				counts[vector.getId(i)]++;
+			weighting.add(vector);
+			if(random.nextInt(3)==0) {
+				snapshots.add(weighting.snapshot());
+				expected.add(counts.clone());
+			}
+		}
+		for(int i=0;i<snapshots.size();i++)
+			for(int id=0;id<counts.length;id++)
+				assertEquals(expected.get(i)[id], snapshots.get(i).getDocumentFrequency(id));
+		assertSame(weighting.snapshot(), weighting.snapshot());
+	}
+	public void testPruneRemapsDocumentFrequencies() {
+		WordModel model = new WordModel.BagOfWords(new NoStemmer());
+		TermWeighting weighting = new TermWeighting(TermWeighting.Scheme.BM25, model.getVocabulary());
+		weighting.add(model.getSentenceTermFrequencyVector("a b"));
+		weighting.add(model.getSentenceTermFrequencyVector("b c"));
+		weighting.add(model.getSentenceTermFrequencyVector("c"));
+		model.getVocabulary().prune(2, Integer.MAX_VALUE, 1);
+		TermWeighting.Snapshot snapshot = weighting.snapshot();
+		assertEquals(2, model.getVocabulary().size());
+		for(int id=0;id<model.getVocabulary().size();id++)
+			assertEquals(2, snapshot.getDocumentFrequency(id));
+		assertEquals(0, snapshot.getDocumentFrequency(2));
+	}
+}
@@ -0,0 +1,65 @@
+package auth.eng.textManager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks that vectors written by {@link VectorFileWriter} are read back by {@link VectorFileReader} and that files
+ * whose writer was not closed are rejected.
+ * @author Emmanouil Krasanakis
+ */
+public class VectorFileTest extends TestCase {
+	public void testRoundTrip() throws IOException {
+		Path path = Files.createTempFile("vectors", ".tmvf");
+		try {
+			WordModel model = new WordModel.BagOfWords(new NoStemmer());
+			SparseVector[] vectors = {model.getSentenceSparseFeatureVector("a b c"), model.getSentenceSparseFeatureVector(""), model.getSentenceSparseFeatureVector("c d")};
+			try(VectorFileWriter writer = new VectorFileWriter(path, model)) {
+				for(SparseVector vector : vectors)
+					writer.write(vector);
+			}
+			try(VectorFileReader reader = new VectorFileReader(path)) {
+				assertTrue(reader.isCompatible(model));
+				assertEquals(vectors.length, reader.size());
+				for(int row=0;row<vectors.length;row++) {
+					SparseVectorView view = reader.getRow(row);
+					assertEquals(vectors[row].size(), view.size());
+					for(int i=0;i<view.size();i++) {
+						assertEquals(vectors[row].getId(i), view.getId(i));
+						assertEquals(vectors[row].getValue(i), view.getValue(i), 0);
+					}
+				}
+			}
+		}
+		finally {
+			Files.delete(path);
+		}
+	}
+	public void testUnclosedWriter() throws IOException {
+		Path path = Files.createTempFile("vectors", ".tmvf");
+		try {
+			WordModel model = new WordModel.BagOfWords(new NoStemmer());
+			try(VectorFileWriter writer = new VectorFileWriter(path, model)) {
+				writer.write(model.getSentenceSparseFeatureVector("a b c"));
+			}
+			try(RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+				file.seek(VectorFileWriter.HEADER_HASH_POSITION+20);//the index position, as left by a writer that was not closed
+				file.writeLong(0);
+			}
+			try {
+				new VectorFileReader(path).close();
+				fail("Incomplete vector file was read");
+			}
+			catch(IOException e) {
+			}
+		}
+		finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package auth.eng.textManager;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks merging the vocabularies of word models that were trained on different shards.
+ * @author Emmanouil Krasanakis
+ */
+public class VocabularyTest extends TestCase {
+	public void testMergeIsDeterministic() {
+		WordModel shard1 = new WordModel.BagOfWords(new NoStemmer());
+		WordModel shard2 = new WordModel.BagOfWords(new NoStemmer());
+		SparseVector vector = shard1.getSentenceTermFrequencyVector("a b b");
+		shard2.getSentenceTermFrequencyVector("c b");
+		Vocabulary.Merge merge = Vocabulary.merge(shard1.getVocabulary(), shard2.getVocabulary());
+		Vocabulary reversed = Vocabulary.merge(shard2.getVocabulary(), shard1.getVocabulary()).getVocabulary();
+		assertEquals(merge.getVocabulary().getHash(), reversed.getHash());
+		assertEquals("b", merge.getVocabulary().getText(0));
+		WordModel merged = new WordModel.BagOfWords(new NoStemmer()).setVocabulary(merge.getVocabulary());
+		SparseVector remapped = vector.remap(merge.getRemap(0));
+		assertEquals("b a", merged.convertVectorToFeatureSentence(remapped.toDense(merged.getCurrentFeatureVectorLength())));
+	}
+	public void testLocalKeysAreNotMerged() {
+		WordModel shard1 = new WordModel.Bigram(new NoStemmer()).setFeatureKeys(true);
+		WordModel shard2 = new WordModel.Bigram(new NoStemmer()).setFeatureKeys(true);
+		shard1.getSentenceTermFrequencyVector("x y");
+		shard2.getSentenceTermFrequencyVector("y x");
+		try {
+			Vocabulary.merge(shard1.getVocabulary(), shard2.getVocabulary());
+			fail("Merged word-id keys of different models");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			shard2.setVocabulary(shard1.getVocabulary());
+			fail("Adopted word-id keys of another model");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+	public void testContentKeysAreMerged() {
+		WordModel shard1 = new WordModel.CharacterNGram(3, 4, new NoStemmer()).setFeatureKeys(true);
+		WordModel shard2 = new WordModel.CharacterNGram(3, 4, new NoStemmer()).setFeatureKeys(true);
+		shard1.getSentenceTermFrequencyVector("hello");
+		shard2.getSentenceTermFrequencyVector("yellow");
+		Vocabulary merged = Vocabulary.merge(shard1.getVocabulary(), shard2.getVocabulary()).getVocabulary();
+		assertTrue(merged.size()<shard1.getVocabulary().size()+shard2.getVocabulary().size());
+	}
+}
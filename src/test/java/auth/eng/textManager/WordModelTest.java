@@ -0,0 +1,88 @@
+package auth.eng.textManager;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Random;
+
+import auth.eng.textManager.stemmers.NoStemmer;
+import junit.framework.TestCase;
+
+/**
+ * Checks the features and vectors of word models.
+ * @author Emmanouil Krasanakis
+ */
+public class WordModelTest extends TestCase {
+	public void testSkipgramDecay() {
+		WordModel model = new WordModel.Skipgram(new NoStemmer(), 2, 0.5);
+		String sentence = "a b a b";
+		SparseVector binary = model.getSentenceSparseFeatureVector(sentence);
+		for(int i=0;i<binary.size();i++)
+			assertEquals(1, binary.getValue(i), 0);
+		for(double value : model.getSentenceFeatureVector(sentence))
+			assertTrue(value==0 || value==1);
+		// pairs "a b" at distances 1, 1, 1 and pairs "a a", "b b" at distance 2
+		SparseVector termFrequencies = model.getSentenceTermFrequencyVector(sentence);
+		Vocabulary vocabulary = model.getVocabulary();
+		double[] dense = termFrequencies.toDense(model.getCurrentFeatureVectorLength());
+		assertEquals(2, dense[vocabulary.getId("a b")], 0);
+		assertEquals(1, dense[vocabulary.getId("b a")], 0);
+		assertEquals(0.5, dense[vocabulary.getId("a a")], 0);
+		assertEquals(0.5, dense[vocabulary.getId("b b")], 0);
+	}
+	public void testCharacterGramKeys() {
+		WordModel.CharacterNGram model = new WordModel.CharacterNGram(new NoStemmer());
+		Random random = new Random(31);
+		HashMap<String, Long> gramKeys = new HashMap<String, Long>();
+		HashMap<Long, String> keyGrams = new HashMap<Long, String>();
+		for(int test=0;test<500;test++) {
+			StringBuilder sentence = new StringBuilder();
+			for(int word=random.nextInt(6);word>0;word--) {
+				for(int length=1+random.nextInt(8);length>0;length--)
+					sentence.append("abAB".charAt(random.nextInt(4)));
+				sentence.append(' ');
+			}
+			// keys rolled along words should be the ones of the same grams hashed directly at word starts
+			String[] grams = model.getSentenceFeatures(sentence.toString());
+			long[] keys = model.getSentenceFeatureKeys(sentence.toString());
+			assertEquals(grams.length, keys.length);
+			for(int i=0;i<keys.length;i++) {
+				assertEquals(grams[i], model.getKeyText(keys[i]));
+				Long key = gramKeys.put(grams[i], keys[i]);
+				assertTrue(key==null || key==keys[i]);
+				String gram = keyGrams.put(keys[i], grams[i]);
+				assertTrue(gram==null || gram.equals(grams[i]));
+			}
+		}
+	}
+	/**
+	 * @return true if the referenced object is garbage collected within a few collections
+	 */
+	private static boolean isCollected(WeakReference<?> reference) throws InterruptedException {
+		for(int attempt=0;attempt<50 && reference.get()!=null;attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		return reference.get()==null;
+	}
+	public void testFeatureCacheDoesNotRetainModels() throws InterruptedException {
+		FeatureCache featureCache = new FeatureCache(1024);
+		WordModel model = new WordModel.BagOfWords(new NoStemmer()).setFeatureCache(featureCache);
+		model.getSentenceSparseFeatureVector("a b c");
+		model.getSentenceSparseFeatureVector("a b c");
+		assertEquals(1, featureCache.getHitCount());
+		WeakReference<WordModel> reference = new WeakReference<WordModel>(model);
+		model = null;
+		assertTrue(isCollected(reference));
+		assertEquals(1, featureCache.size());
+	}
+	public void testReplacedVocabularyDoesNotRetainModels() throws InterruptedException {
+		Vocabulary merged = new Vocabulary();
+		WordModel model = new WordModel.BagOfWords(new NoStemmer()).setFeatureCache(new FeatureCache(1024));
+		model.setVocabulary(merged);
+		model.setVocabulary(new Vocabulary());
+		WeakReference<WordModel> reference = new WeakReference<WordModel>(model);
+		model = null;
+		assertTrue(isCollected(reference));
+		assertEquals(0, merged.size());//keeps the replaced vocabulary reachable
+	}
+}
@@ -0,0 +1,29 @@
+package auth.eng.textManager.stemmers;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link StopwordRemove} returns the base stemmer's stem of each word in its original case.
+ * @author Emmanouil Krasanakis
+ */
+public class StopwordRemoveTest extends TestCase {
+	private static final String[] WORDS = {"Running", "running", "The", "the", "AB", "ab", "Go", "Xy", "iPhone", "Cats", "2nd", "", "ABOUT", "Stemming"};
+
+	private static void assertBaseStems(Stemmer baseStemmer) {
+		StopwordRemove stemmer = new StopwordRemove(baseStemmer);
+		String[] expected = new String[WORDS.length];
+		for(int i=0;i<WORDS.length;i++) {
+			expected[i] = stemmer.isStopword(WORDS[i])?null:baseStemmer.stem(WORDS[i]);
+			assertEquals(WORDS[i], expected[i], stemmer.stem(WORDS[i]));
+		}
+		assertEquals(Arrays.asList(expected), Arrays.asList(stemmer.stemAll(WORDS)));
+	}
+	public void testOriginalCase() {
+		assertBaseStems(new NoStemmer());
+		assertBaseStems(new PorterStemmer());
+		assertBaseStems(new LovinsStemmer());
+		assertBaseStems(new IteratedLovinsStemmer());
+	}
+}
@@ -0,0 +1,90 @@
+package auth.eng.textManager.stemmers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link StreamingStemmer} produces the same text as stemming it sequentially.
+ * @author Emmanouil Krasanakis
+ */
+public class StreamingStemmerTest extends TestCase {
+	private static final String[] PIECES = {"the", "The", "Running", "nations", "national", "cafés", "don't", "'quoted'",
+			"dogs'", "ABC123def", "2nd", " ", " ", " ", ", ", ".\n", "\t", "--", "\u00A0", "\uD83D\uDE00"};
+
+	/**
+	 * @return the text that {@link LovinsStemmer#stemString(String)} produces for any stemmer, omitting words whose stem is null
+	 */
+	private static String stemSequentially(Stemmer stemmer, String text) {
+		StringBuilder result = new StringBuilder();
+		int start = -1;
+		for(int j=0;j<=text.length();j++) {
+			char c = j<text.length()?text.charAt(j):' ';
+			if(Character.isLetterOrDigit(c)) {
+				if(start==-1)
+					start = j;
+			}
+			else if(c=='\'') {
+				if(start==-1)
+					result.append(c);
+			}
+			else {
+				if(start!=-1) {
+					String stem = stemmer.stem(text.substring(start, j));
+					if(stem!=null)
+						result.append(stem);
+					start = -1;
+				}
+				if(j<text.length())
+					result.append(c);
+			}
+		}
+		return result.toString();
+	}
+	private static String stem(StreamingStemmer stemmer, String text, Charset charset) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		stemmer.stem(Channels.newChannel(new ByteArrayInputStream(text.getBytes(charset))), Channels.newChannel(output));
+		return new String(output.toByteArray(), charset);
+	}
+	public void testAsciiLetterWords() throws IOException {
+		String text = "Running's 2nd ABC123def cafés nations";
+		LovinsStemmer lovins = new LovinsStemmer();
+		StringBuilder expected = new StringBuilder();
+		StringBuilder word = new StringBuilder();
+		for(int i=0;i<=text.length();i++) {//tokenization of the original LovinsStemmer command line
+			char c = i<text.length()?text.charAt(i):' ';
+			if((c>='A' && c<='Z') || (c>='a' && c<='z'))
+				word.append(c);
+			else {
+				if(word.length()>0)
+					expected.append(lovins.stem(word.toString().toLowerCase()));
+				word.setLength(0);
+				if(i<text.length())
+					expected.append(c);
+			}
+		}
+		for(int blockSize : new int[]{3, 1 << 10})
+			assertEquals(expected.toString(), stem(new StreamingStemmer(lovins, StandardCharsets.ISO_8859_1, blockSize, 2).setAsciiLetterWords(true), text, StandardCharsets.ISO_8859_1));
+	}
+	public void testSequentialStemming() throws IOException {
+		Random random = new Random(37);
+		StringBuilder text = new StringBuilder();
+		for(int i=0;i<20000;i++)
+			text.append(PIECES[random.nextInt(PIECES.length)]);
+		LovinsStemmer lovins = new LovinsStemmer();
+		assertEquals(lovins.stemString(text.toString()), stemSequentially(lovins, text.toString()));
+		for(Stemmer stemmer : new Stemmer[]{lovins, new PorterStemmer(), new StopwordRemove(new PorterStemmer())}) {
+			String expected = stemSequentially(stemmer, text.toString());
+			for(int blockSize : new int[]{1, 7, 1 << 10, 1 << 20})
+				for(int threads : new int[]{1, 3})
+					assertEquals(stemmer.getName()+" "+blockSize+" "+threads, expected,
+							stem(new StreamingStemmer(stemmer, StandardCharsets.UTF_8, blockSize, threads), text.toString(), StandardCharsets.UTF_8));
+		}
+	}
+}